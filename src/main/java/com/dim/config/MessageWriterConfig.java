@@ -0,0 +1,107 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration du pipeline d'écriture asynchrone (write-behind) des messages.
+ *
+ * Les messages sont placés dans une file bornée puis écrits dans MongoDB
+ * par lots via insertMany (écritures non ordonnées), ou regroupés par room
+ * et fenêtre de temps dans des documents 'bucket' (layout BUCKETED).
+ */
+@ConfigMapping(prefix = "scigal.message-writer")
+public interface MessageWriterConfig {
+
+    /**
+     * Politique appliquée quand la file est pleine.
+     */
+    enum OverflowPolicy {
+        /** Bloque l'appelant au plus blockTimeoutMs, puis abandonne le message */
+        BLOCK,
+        /** Abandonne immédiatement le message */
+        DROP,
+        /** Écrit le message dans un fichier local, rejoué dès que la file se vide */
+        SPILL
+    }
+
+    /**
+     * Organisation des messages dans MongoDB.
+     */
+    enum Layout {
+        /** Un document par message (collection 'messages') */
+        FLAT,
+        /** Un document par room et fenêtre de temps, plafonné en nombre de messages (collection 'message_buckets') */
+        BUCKETED
+    }
+
+    /**
+     * Capacité maximale de la file en mémoire.
+     * Par défaut: 10000
+     */
+    @WithDefault("10000")
+    int queueCapacity();
+
+    /**
+     * Nombre maximal de documents par insertMany.
+     * Par défaut: 500
+     */
+    @WithDefault("500")
+    int batchSize();
+
+    /**
+     * Délai maximal (ms) avant l'écriture d'un lot incomplet.
+     * Par défaut: 50
+     */
+    @WithDefault("50")
+    long flushIntervalMs();
+
+    /**
+     * Politique de débordement: BLOCK, DROP ou SPILL.
+     * Par défaut: SPILL
+     */
+    @WithDefault("SPILL")
+    OverflowPolicy overflowPolicy();
+
+    /**
+     * Attente maximale (ms) de l'appelant avec la politique BLOCK.
+     * Par défaut: 5
+     */
+    @WithDefault("5")
+    long blockTimeoutMs();
+
+    /**
+     * Fichier de débordement (NDJSON) utilisé par la politique SPILL.
+     */
+    @WithDefault("/tmp/scigal-message-spill.ndjson")
+    String spillFile();
+
+    /**
+     * Temps maximal (ms) accordé à la vidange de la file à l'arrêt.
+     * Par défaut: 10000
+     */
+    @WithDefault("10000")
+    long shutdownTimeoutMs();
+
+    /**
+     * Organisation des messages: FLAT ou BUCKETED.
+     * Les messages existants passent de FLAT à BUCKETED avec MessageBucketMigration.
+     * Par défaut: FLAT
+     */
+    @WithDefault("FLAT")
+    Layout layout();
+
+    /**
+     * Durée (s) de la fenêtre de temps couverte par un bucket (layout BUCKETED).
+     * Par défaut: 3600
+     */
+    @WithDefault("3600")
+    long bucketWindowSeconds();
+
+    /**
+     * Nombre maximal de messages par bucket; une fenêtre pleine ouvre un nouveau bucket.
+     * Par défaut: 200
+     */
+    @WithDefault("200")
+    int bucketMaxMessages();
+}
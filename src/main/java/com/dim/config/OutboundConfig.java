@@ -0,0 +1,79 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.List;
+
+/**
+ * Protection contre les clients lents (file sortante bornée par client).
+ *
+ * Au-delà du seuil haut, le canal Netty n'est plus inscriptible: les événements suivants sont
+ * retenus dans un budget par client, puis la politique s'applique quand le budget est dépassé.
+ */
+@ConfigMapping(prefix = "scigal.outbound")
+public interface OutboundConfig {
+
+    /**
+     * Politique appliquée quand le budget d'un client lent est dépassé.
+     */
+    enum SlowConsumerPolicy {
+        /** Abandonne les plus anciens événements non critiques retenus */
+        DROP_OLDEST,
+        /** Ne garde que le dernier événement retenu de chaque type non critique, puis DROP_OLDEST */
+        COALESCE,
+        /** Déconnecte le client (close websocket 4008 "slow consumer") */
+        DISCONNECT
+    }
+
+    /**
+     * Seuil bas (octets) du buffer d'écriture Netty: le canal redevient inscriptible en dessous.
+     * Par défaut: 32768
+     */
+    @WithDefault("32768")
+    int lowWaterMark();
+
+    /**
+     * Seuil haut (octets) du buffer d'écriture Netty: le client est considéré lent au-dessus.
+     * Par défaut: 262144
+     */
+    @WithDefault("262144")
+    int highWaterMark();
+
+    /**
+     * Nombre maximal d'événements retenus pour un client lent.
+     * Par défaut: 256
+     */
+    @WithDefault("256")
+    int maxPendingEvents();
+
+    /**
+     * Taille maximale (octets) des événements retenus pour un client lent.
+     * Par défaut: 1048576
+     */
+    @WithDefault("1048576")
+    long maxPendingBytes();
+
+    /**
+     * Politique: DROP_OLDEST, COALESCE ou DISCONNECT.
+     * Par défaut: DROP_OLDEST
+     */
+    @WithDefault("DROP_OLDEST")
+    SlowConsumerPolicy policy();
+
+    /**
+     * Événements non critiques, qui peuvent être abandonnés ou fusionnés.
+     * Les autres (signal, call_metadata, history...) ne sont jamais abandonnés.
+     * Par défaut: message,presence,binary
+     */
+    @WithDefault("message,presence,binary")
+    List<String> droppableEvents();
+
+    /**
+     * Durée maximale (ms) pendant laquelle un client peut rester non inscriptible avant d'être
+     * déconnecté, quelle que soit la politique. 0 = pas de limite.
+     * Par défaut: 30000
+     */
+    @WithDefault("30000")
+    long maxStallMs();
+}
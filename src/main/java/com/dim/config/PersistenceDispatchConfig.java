@@ -0,0 +1,35 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration des files d'exécution des écritures MongoDB déclenchées par les événements Socket.IO.
+ *
+ * Chaque tâche est associée à une clé (room, userId, callId): les tâches d'une même clé
+ * passent par la même file et s'exécutent dans l'ordre.
+ */
+@ConfigMapping(prefix = "scigal.persistence")
+public interface PersistenceDispatchConfig {
+
+    /**
+     * Nombre de files (un thread par file).
+     * Par défaut: 8
+     */
+    @WithDefault("8")
+    int lanes();
+
+    /**
+     * Capacité de chaque file. Au-delà, les tâches sont rejetées et comptées.
+     * Par défaut: 10000
+     */
+    @WithDefault("10000")
+    int laneCapacity();
+
+    /**
+     * Temps maximal (ms) accordé à la vidange des files à l'arrêt.
+     * Par défaut: 10000
+     */
+    @WithDefault("10000")
+    long shutdownTimeoutMs();
+}
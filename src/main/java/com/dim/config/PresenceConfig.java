@@ -0,0 +1,42 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration de la présence: agrégation des événements, état dans Redis
+ * (référence, 'presence:z:{userId}' avec TTL) et persistance différée dans MongoDB.
+ */
+@ConfigMapping(prefix = "scigal.presence")
+public interface PresenceConfig {
+
+    /**
+     * Fenêtre (ms) pendant laquelle les transitions online/offline sont regroupées
+     * avant l'envoi d'un seul diff par room.
+     * Par défaut: 250
+     */
+    @WithDefault("250")
+    long windowMs();
+
+    /**
+     * Durée de vie (s) de la présence d'un utilisateur sur une instance (son entrée dans presence:z:{userId}).
+     * Par défaut: 90
+     */
+    @WithDefault("90")
+    int ttlSeconds();
+
+    /**
+     * Intervalle (ms) de renouvellement (ZADD + PEXPIRE dans un MULTI/EXEC) de la présence des utilisateurs connectés.
+     * Doit rester nettement inférieur à ttlSeconds.
+     * Par défaut: 30000
+     */
+    @WithDefault("30000")
+    long heartbeatIntervalMs();
+
+    /**
+     * Intervalle (ms) entre deux bulkWrite du dernier statut et lastSeen de chaque utilisateur (profiles).
+     * Par défaut: 5000
+     */
+    @WithDefault("5000")
+    long persistIntervalMs();
+}
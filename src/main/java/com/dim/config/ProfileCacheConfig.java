@@ -0,0 +1,37 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration du cache local (near-cache) des profils utilisateurs.
+ *
+ * Les entrées sont invalidées sur toutes les instances via le bus à chaque saveProfile et à
+ * chaque écriture différée des statuts (updateStatus n'invalide rien tant que le statut n'est pas
+ * écrit); la durée de vie borne l'écart en cas de perte d'un événement. Désactivé, aucune
+ * invalidation n'est publiée.
+ */
+@ConfigMapping(prefix = "scigal.profile-cache")
+public interface ProfileCacheConfig {
+
+    /**
+     * Active le cache local des profils.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean enabled();
+
+    /**
+     * Budget mémoire approximatif (octets) du cache, éviction LRU au-delà.
+     * Par défaut: 16777216 (16 Mo)
+     */
+    @WithDefault("16777216")
+    long memoryBudgetBytes();
+
+    /**
+     * Durée de vie (ms) d'une entrée, profils absents compris.
+     * Par défaut: 300000
+     */
+    @WithDefault("300000")
+    long ttlMs();
+}
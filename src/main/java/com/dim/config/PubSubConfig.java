@@ -0,0 +1,121 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.Optional;
+
+/**
+ * Configuration du bus inter-instances (Redis Pub/Sub, Redis Streams ou en mémoire).
+ */
+@ConfigMapping(prefix = "scigal.pubsub")
+public interface PubSubConfig {
+
+    /**
+     * Transport du bus.
+     */
+    enum Mode {
+        /** PUBLISH/SUBSCRIBE: sans persistance, les événements publiés pendant une coupure sont perdus */
+        PUBSUB,
+        /** Redis Streams: XADD plafonné, lecture XREADGROUP par lots, reprise au dernier ID acquitté */
+        STREAMS,
+        /** En mémoire, sans Redis: déploiement mono-instance */
+        MEMORY
+    }
+
+    /**
+     * Transport du bus: PUBSUB, STREAMS ou MEMORY.
+     * Par défaut: PUBSUB
+     */
+    @WithDefault("PUBSUB")
+    Mode mode();
+
+    /**
+     * Nombre maximal de PUBLISH regroupés dans une seule écriture (pipeline).
+     * Par défaut: 256
+     */
+    @WithDefault("256")
+    int maxBatch();
+
+    /**
+     * Nombre maximal de publications en attente (connexion indisponible).
+     * Au-delà, les nouvelles publications sont abandonnées.
+     * Par défaut: 50000
+     */
+    @WithDefault("50000")
+    int maxPending();
+
+    /**
+     * Délai (ms) entre deux tentatives de reconnexion des connexions du bus (publication, abonnements, stream).
+     * Par défaut: 1000
+     */
+    @WithDefault("1000")
+    long reconnectDelayMs();
+
+    /**
+     * Nombre de canaux partagés entre les rooms (hash du nom de room).
+     * 0: un canal par room (scigal:room:{room}).
+     * Par défaut: 0
+     */
+    @WithDefault("0")
+    int roomShards();
+
+    /**
+     * Clé du stream partagé par toutes les instances (mode STREAMS).
+     * Par défaut: scigal:events
+     */
+    @WithDefault("scigal:events")
+    String streamKey();
+
+    /**
+     * Longueur maximale approximative du stream (XADD MAXLEN ~): borne aussi la reprise après coupure.
+     * Par défaut: 100000
+     */
+    @WithDefault("100000")
+    long streamMaxLen();
+
+    /**
+     * Nombre maximal d'entrées lues par XREADGROUP.
+     * Par défaut: 256
+     */
+    @WithDefault("256")
+    int streamReadCount();
+
+    /**
+     * Attente maximale (ms) d'un XREADGROUP sans nouvelle entrée.
+     * Par défaut: 1000
+     */
+    @WithDefault("1000")
+    long streamBlockMs();
+
+    /**
+     * Identifiant stable du nœud, qui nomme son groupe de consommateurs: un nœud redémarré sous le même
+     * identifiant reprend après la dernière entrée lue. Il doit survivre aux redémarrages, p. ex. le
+     * nom d'un pod de StatefulSet (scigal-0, scigal-1...); pas le HOSTNAME d'un pod de Deployment, qui
+     * change à chaque redémarrage et laisserait un groupe orphelin par pod.
+     * Par défaut: aucun (groupe propre à l'instance, supprimé à l'arrêt: pas de reprise après redémarrage).
+     */
+    Optional<String> streamNodeId();
+
+    /**
+     * Détection des autres instances (ensemble Redis scigal:instances): seule, une instance ne publie
+     * rien sur le bus.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean peerDetection();
+
+    /**
+     * Intervalle (ms) entre deux heartbeats d'instance.
+     * Par défaut: 2000
+     */
+    @WithDefault("2000")
+    long peerHeartbeatMs();
+
+    /**
+     * Délai (ms) sans heartbeat au-delà duquel une instance n'est plus considérée vivante.
+     * Par défaut: 6000
+     */
+    @WithDefault("6000")
+    long peerTtlMs();
+}
@@ -0,0 +1,102 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Limitation de débit des événements Socket.IO (seaux à jetons par connexion et par type d'événement).
+ *
+ * Chaque type a un débit soutenu (événements/s) et une rafale maximale. Un événement hors budget est
+ * rejeté avant tout décodage JSON, le client reçoit un ack d'erreur ou un événement "error".
+ */
+@ConfigMapping(prefix = "scigal.rate-limit")
+public interface RateLimitConfig {
+
+    /**
+     * Clé des seaux à jetons.
+     */
+    enum Key {
+        /** Un budget par session Socket.IO */
+        SESSION,
+        /** Un budget partagé par toutes les sessions d'un même userId (paramètre de connexion) */
+        USER
+    }
+
+    /**
+     * Active la limitation.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean enabled();
+
+    /**
+     * Clé des budgets: SESSION ou USER (repli sur la session sans userId).
+     * Par défaut: SESSION
+     */
+    @WithDefault("SESSION")
+    Key key();
+
+    /**
+     * Débit soutenu des événements "message" (par seconde).
+     * Par défaut: 20
+     */
+    @WithDefault("20")
+    double messageRate();
+
+    /**
+     * Rafale maximale d'événements "message".
+     * Par défaut: 40
+     */
+    @WithDefault("40")
+    int messageBurst();
+
+    /**
+     * Débit soutenu des événements "signal" (par seconde). Les candidats ICE arrivent en rafale.
+     * Par défaut: 50
+     */
+    @WithDefault("50")
+    double signalRate();
+
+    /**
+     * Rafale maximale d'événements "signal".
+     * Par défaut: 100
+     */
+    @WithDefault("100")
+    int signalBurst();
+
+    /**
+     * Débit soutenu des événements "call_metadata" (par seconde).
+     * Par défaut: 2
+     */
+    @WithDefault("2")
+    double callMetadataRate();
+
+    /**
+     * Rafale maximale d'événements "call_metadata".
+     * Par défaut: 10
+     */
+    @WithDefault("10")
+    int callMetadataBurst();
+
+    /**
+     * Débit soutenu des événements "history" (par seconde), chacun une lecture MongoDB.
+     * Par défaut: 5
+     */
+    @WithDefault("5")
+    double historyRate();
+
+    /**
+     * Rafale maximale d'événements "history".
+     * Par défaut: 10
+     */
+    @WithDefault("10")
+    int historyBurst();
+
+    /**
+     * Intervalle minimal (ms) entre deux événements "error" envoyés à un même client pour un même
+     * type d'événement (les acks demandés sont toujours renvoyés).
+     * Par défaut: 1000
+     */
+    @WithDefault("1000")
+    long notifyIntervalMs();
+}
@@ -0,0 +1,41 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration de la diffusion de données brutes (RawDataBroadcaster, /raw).
+ */
+@ConfigMapping(prefix = "scigal.raw")
+public interface RawPushConfig {
+
+    /**
+     * Mode debug: envoyer les octets sous forme de dump hexadécimal texte (événement "message")
+     * au lieu d'une pièce jointe binaire (événement "binary").
+     * Par défaut: false
+     */
+    @WithDefault("false")
+    boolean hexDebug();
+
+    /**
+     * Capacité de la file entre la lecture d'un flux /raw/push/stream et la diffusion Socket.IO.
+     * Quand elle est pleine, la lecture du corps de la requête est suspendue.
+     * Par défaut: 4096
+     */
+    @WithDefault("4096")
+    int streamQueueCapacity();
+
+    /**
+     * Attente maximale (ms) d'une place dans la file avant de rejeter un enregistrement.
+     * Par défaut: 5000
+     */
+    @WithDefault("5000")
+    long backpressureTimeoutMs();
+
+    /**
+     * Taille maximale (octets) d'un enregistrement (ligne NDJSON ou frame préfixée).
+     * Par défaut: 1048576
+     */
+    @WithDefault("1048576")
+    int maxRecordBytes();
+}
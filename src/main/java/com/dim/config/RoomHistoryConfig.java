@@ -0,0 +1,50 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration de l'historique rejoué à l'entrée dans une room.
+ *
+ * L1: buffer circulaire en mémoire par room (éviction LRU par room),
+ * L2: liste Redis (CacheService), MongoDB en dernier recours.
+ * Les pages plus anciennes (REST et événement 'history') sont lues dans MongoDB.
+ */
+@ConfigMapping(prefix = "scigal.history")
+public interface RoomHistoryConfig {
+
+    /**
+     * Nombre de messages rejoués lors d'un join (0 pour désactiver).
+     * Par défaut: 50
+     */
+    @WithDefault("50")
+    int replaySize();
+
+    /**
+     * Budget mémoire approximatif (octets) du cache L1, toutes rooms confondues.
+     * Par défaut: 67108864 (64 Mo)
+     */
+    @WithDefault("67108864")
+    long memoryBudgetBytes();
+
+    /**
+     * Nombre de messages conservés dans la liste Redis de chaque room.
+     * Par défaut: 200
+     */
+    @WithDefault("200")
+    int redisListSize();
+
+    /**
+     * Nombre de messages par page d'historique quand le client n'en demande pas.
+     * Par défaut: 50
+     */
+    @WithDefault("50")
+    int pageSize();
+
+    /**
+     * Nombre maximal de messages par page d'historique.
+     * Par défaut: 200
+     */
+    @WithDefault("200")
+    int maxPageSize();
+}
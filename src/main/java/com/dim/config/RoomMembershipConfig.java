@@ -0,0 +1,18 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Configuration de l'écriture différée des membres de room (collection rooms).
+ */
+@ConfigMapping(prefix = "scigal.rooms")
+public interface RoomMembershipConfig {
+
+    /**
+     * Intervalle (ms) entre deux bulkWrite des changements de membres en attente.
+     * Par défaut: 1000
+     */
+    @WithDefault("1000")
+    long flushIntervalMs();
+}
@@ -0,0 +1,50 @@
+package com.dim.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Registre des sessions Socket.IO du cluster (session -> instance propriétaire) dans Redis.
+ *
+ * Un signal WebRTC ciblé est publié sur le canal privé de l'instance qui porte la session cible,
+ * au lieu du canal global lu par toutes les instances.
+ */
+@ConfigMapping(prefix = "scigal.session-registry")
+public interface SessionRegistryConfig {
+
+    /**
+     * Active le registre. Désactivé, les signaux ciblés passent par le canal global.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean enabled();
+
+    /**
+     * Durée de vie (s) d'une entrée dans Redis, prolongée à chaque heartbeat.
+     * Par défaut: 60
+     */
+    @WithDefault("60")
+    int ttlSeconds();
+
+    /**
+     * Intervalle (ms) entre deux heartbeats (EXPIRE pipelinés des sessions locales).
+     * Doit rester nettement inférieur à ttlSeconds.
+     * Par défaut: 20000
+     */
+    @WithDefault("20000")
+    long heartbeatIntervalMs();
+
+    /**
+     * Durée (ms) pendant laquelle une instance propriétaire résolue reste en cache local.
+     * Par défaut: 30000
+     */
+    @WithDefault("30000")
+    long cacheTtlMs();
+
+    /**
+     * Nombre maximal d'entrées du cache local.
+     * Par défaut: 10000
+     */
+    @WithDefault("10000")
+    int cacheMaxEntries();
+}
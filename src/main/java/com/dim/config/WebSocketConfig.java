@@ -32,4 +32,88 @@ public interface WebSocketConfig {
      */
     @WithDefault("true")
     boolean autoDetectK8sPort();
+
+    /**
+     * Utiliser le transport natif epoll (Linux). Ignoré si epoll n'est pas disponible.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean useEpoll();
+
+    /**
+     * Nombre de threads acceptant les connexions (boss).
+     * Par défaut: 1
+     */
+    @WithDefault("1")
+    int bossThreads();
+
+    /**
+     * Nombre de threads d'I/O (worker). 0: valeur Netty (2 x nombre de coeurs).
+     * Par défaut: 0
+     */
+    @WithDefault("0")
+    int workerThreads();
+
+    /**
+     * Utiliser des buffers directs (pool Netty) pour les écritures.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean preferDirectBuffer();
+
+    /**
+     * Taille maximale (octets) d'une frame WebSocket entrante.
+     * Par défaut: 65536
+     */
+    @WithDefault("65536")
+    int maxFramePayloadLength();
+
+    /**
+     * Taille maximale (octets) d'un corps HTTP (transport polling).
+     * Par défaut: 65536
+     */
+    @WithDefault("65536")
+    int maxHttpContentLength();
+
+    /**
+     * Intervalle (ms) des pings Engine.IO.
+     * Par défaut: 25000
+     */
+    @WithDefault("25000")
+    int pingInterval();
+
+    /**
+     * Délai (ms) sans pong avant de considérer le client déconnecté.
+     * Par défaut: 60000
+     */
+    @WithDefault("60000")
+    int pingTimeout();
+
+    /**
+     * Désactiver l'algorithme de Nagle (TCP_NODELAY).
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean tcpNoDelay();
+
+    /**
+     * Taille de la file des connexions en attente d'acceptation (SO_BACKLOG).
+     * Par défaut: 1024
+     */
+    @WithDefault("1024")
+    int acceptBacklog();
+
+    /**
+     * Activer SO_KEEPALIVE sur les connexions clientes.
+     * Par défaut: false
+     */
+    @WithDefault("false")
+    boolean tcpKeepAlive();
+
+    /**
+     * Activer SO_REUSEADDR sur le socket d'écoute.
+     * Par défaut: true
+     */
+    @WithDefault("true")
+    boolean reuseAddress();
 }
@@ -0,0 +1,22 @@
+package com.dim.model;
+
+/**
+ * Call metadata event. The whole event body is persisted as the call metadata.
+ */
+public class CallMessage extends Message {
+    public static final String TYPE = "call_metadata";
+
+    private String callId;
+    private String to;
+
+    public CallMessage() {}
+
+    @Override
+    public String getType() { return TYPE; }
+
+    public String getCallId() { return callId; }
+    public void setCallId(String callId) { this.callId = callId; }
+
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+}
@@ -0,0 +1,31 @@
+package com.dim.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a streamed ingest request: how many records were accepted or rejected,
+ * with the first rejection reasons.
+ */
+public class IngestResult {
+    private static final int MAX_ERRORS = 20;
+
+    private long accepted;
+    private long rejected;
+    private final List<String> errors = new ArrayList<>();
+
+    public IngestResult() {}
+
+    public void accept() { accepted++; }
+
+    public void reject(long record, String reason) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("record " + record + ": " + reason);
+        }
+    }
+
+    public long getAccepted() { return accepted; }
+    public long getRejected() { return rejected; }
+    public List<String> getErrors() { return errors; }
+}
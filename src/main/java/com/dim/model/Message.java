@@ -1,13 +1,29 @@
 package com.dim.model;
 
+import io.vertx.core.json.JsonObject;
+
 import java.time.Instant;
 
+/**
+ * Chat message, also the base of the socket/bus event envelope: the parsed event body is kept
+ * alongside the typed fields and encoded at most once.
+ *
+ * Two forms are sent: the event as the client sent it ({@link #clientWire()}), the only one other
+ * clients get, and the bus envelope ({@link #wire()}) that wraps it with the fields only instances
+ * need (type, origin, send time).
+ */
 public class Message {
+    public static final String TYPE = "message";
+
     private String id;
     private String room;
     private String from;
     private String payload;
     private Instant timestamp;
+    private JsonObject body;
+    private String clientWire;
+    private JsonObject envelope;
+    private String wire;
 
     public Message() {}
 
@@ -57,4 +73,55 @@ public class Message {
     public void setTimestamp(Instant timestamp) {
         this.timestamp = timestamp;
     }
+
+    /**
+     * Event type carried on the wire ("type" field).
+     */
+    public String getType() {
+        return TYPE;
+    }
+
+    /**
+     * The event as sent by the client.
+     */
+    public JsonObject getBody() {
+        return body;
+    }
+
+    public void setBody(JsonObject body) {
+        this.body = body;
+        this.clientWire = null;
+    }
+
+    /**
+     * Serialized client event, encoded once and shared by every socket recipient.
+     */
+    public String clientWire() {
+        if (clientWire == null) {
+            clientWire = body.encode();
+        }
+        return clientWire;
+    }
+
+    /**
+     * Reuse an already serialized form of {@link #getBody()} (e.g. the text received from the client).
+     */
+    public void setClientWire(String clientWire) {
+        this.clientWire = clientWire;
+    }
+
+    public void setEnvelope(JsonObject envelope) {
+        this.envelope = envelope;
+        this.wire = null;
+    }
+
+    /**
+     * Serialized bus envelope, encoded once; never sent to clients.
+     */
+    public String wire() {
+        if (wire == null) {
+            wire = envelope.encode();
+        }
+        return wire;
+    }
 }
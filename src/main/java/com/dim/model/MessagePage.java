@@ -0,0 +1,16 @@
+package com.dim.model;
+
+import java.util.List;
+
+/**
+ * One page of a room's persisted history, oldest message first.
+ *
+ * @param next opaque cursor of the page before this one, null when there are no older messages
+ */
+public record MessagePage(String room, List<Entry> messages, String next) {
+
+    /**
+     * @param timestamp ISO-8601 instant
+     */
+    public record Entry(String id, String from, String payload, String timestamp) {}
+}
@@ -0,0 +1,37 @@
+package com.dim.model;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Bus event telling the other instances to drop cached user profiles.
+ */
+public class ProfileInvalidation extends Message {
+    public static final String TYPE = "profile.invalidate";
+
+    private List<String> userIds = List.of();
+
+    public ProfileInvalidation() {}
+
+    /**
+     * Envelope ready to publish from instance {@code origin}.
+     */
+    public static ProfileInvalidation of(List<String> userIds, String origin) {
+        ProfileInvalidation msg = new ProfileInvalidation();
+        msg.setUserIds(userIds);
+        msg.setEnvelope(new JsonObject()
+            .put("type", TYPE)
+            .put("userIds", new JsonArray(userIds))
+            .put("origin", origin)
+            .put("sentAt", System.currentTimeMillis()));
+        return msg;
+    }
+
+    @Override
+    public String getType() { return TYPE; }
+
+    public List<String> getUserIds() { return userIds; }
+    public void setUserIds(List<String> userIds) { this.userIds = userIds; }
+}
@@ -0,0 +1,18 @@
+package com.dim.model;
+
+/**
+ * WebRTC signalling event (offer/answer/ice), optionally addressed to a single session.
+ */
+public class SignalMessage extends Message {
+    public static final String TYPE = "signal";
+
+    private String target;
+
+    public SignalMessage() {}
+
+    @Override
+    public String getType() { return TYPE; }
+
+    public String getTarget() { return target; }
+    public void setTarget(String target) { this.target = target; }
+}
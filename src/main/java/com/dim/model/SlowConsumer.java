@@ -0,0 +1,10 @@
+package com.dim.model;
+
+/**
+ * Snapshot of a client whose outbound buffer is above the high water mark.
+ *
+ * @param sessionId Socket.IO session id, when already known
+ * @param stalledMs time since the channel became unwritable
+ */
+public record SlowConsumer(String sessionId, String userId, String remoteAddress,
+                           int pendingEvents, long pendingBytes, long dropped, long coalesced, long stalledMs) {}
@@ -0,0 +1,10 @@
+package com.dim.model;
+
+import java.util.List;
+
+/**
+ * One page of users in id order.
+ *
+ * @param next id to pass as {@code after} for the next page, null on the last one
+ */
+public record UserPage(List<UserSummary> users, Long next) {}
@@ -0,0 +1,6 @@
+package com.dim.model;
+
+/**
+ * Listed columns of a user, read as a Panache projection instead of managed entities.
+ */
+public record UserSummary(long id, String name, String email) {}
@@ -1,22 +1,51 @@
 package com.dim.resource;
 
+import com.dim.model.IngestResult;
 import com.dim.ws.RawDataBroadcaster;
+import com.dim.ws.RawStreamIngestor;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @Path("/raw")
 public class RawPushResource {
 
+    static final String NDJSON = "application/x-ndjson";
+
     @Inject
     RawDataBroadcaster broadcaster;
 
+    @Inject
+    RawStreamIngestor ingestor;
+
     @POST
     @Path("/push")
     @Consumes(MediaType.TEXT_PLAIN)
     public void push(String body) {
         broadcaster.broadcastText(body); // broadcast incoming text to websocket clients
     }
+
+    /**
+     * Bulk push over one streamed body: NDJSON (application/x-ndjson) or 4-byte length-prefixed
+     * JSON frames (application/octet-stream). Returns accepted/rejected counts for the whole batch.
+     * The whole body is capped by quarkus.http.limits.max-body-size.
+     */
+    @POST
+    @Path("/push/stream")
+    @Consumes({NDJSON, MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(MediaType.APPLICATION_JSON)
+    public IngestResult pushStream(@HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException {
+        if (contentType != null && contentType.startsWith(NDJSON)) {
+            return ingestor.ingestNdjson(body);
+        }
+        return ingestor.ingestFramed(body);
+    }
 }
@@ -0,0 +1,60 @@
+package com.dim.resource;
+
+import com.dim.model.MessagePage;
+import com.dim.model.UserProfile;
+import com.dim.service.RoomHistoryService;
+import com.dim.service.RoomPersistenceService;
+import com.dim.service.UserProfileService;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.bson.Document;
+
+import java.util.List;
+
+@Path("/rooms")
+public class RoomResource {
+
+    @Inject
+    RoomHistoryService roomHistoryService;
+
+    @Inject
+    RoomPersistenceService roomPersistenceService;
+
+    @Inject
+    UserProfileService userProfileService;
+
+    /**
+     * Persisted messages of a room, latest page first. Pass the returned {@code next} cursor
+     * as {@code before} to get the page before it.
+     */
+    @GET
+    @Path("/{room}/messages")
+    @Produces(MediaType.APPLICATION_JSON)
+    public MessagePage messages(@PathParam("room") String room, @QueryParam("before") String before,
+                                @QueryParam("limit") Integer limit) {
+        try {
+            return roomHistoryService.page(room, before, limit);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Profiles of a room's members, read through the profile near-cache with one query for the misses.
+     */
+    @GET
+    @Path("/{room}/members")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<UserProfile> members(@PathParam("room") String room) {
+        Document doc = roomPersistenceService.getRoom(room);
+        if (doc == null) throw new NotFoundException("unknown room: " + room);
+        return userProfileService.getUserProfiles(doc.getList("members", String.class, List.of()));
+    }
+}
@@ -1,16 +1,34 @@
 package com.dim.resource;
 
+import com.dim.model.SlowConsumer;
+import com.dim.ws.SlowConsumerMonitor;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 
+import java.util.List;
+
 @Path("/Status")
 public class ServiceStatusResource {
 
+    @Inject
+    SlowConsumerMonitor slowConsumerMonitor;
+
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     public String hello() {
         return "Status OK";
     }
+
+    /**
+     * Clients currently above the outbound high water mark, largest backlog first.
+     */
+    @GET
+    @Path("/slow-consumers")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<SlowConsumer> slowConsumers() {
+        return slowConsumerMonitor.getSlowConsumers();
+    }
 }
@@ -1,21 +1,41 @@
 package com.dim.resource;
 import com.dim.entity.User;
+import com.dim.model.IngestResult;
+import com.dim.model.UserPage;
 import com.dim.service.UserService;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
-import java.util.List;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
 @Path("users")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserResource {
 
+    private static final int DEFAULT_PAGE = 100;
+    private static final int MAX_PAGE = 1000;
+
     @Inject
     UserService userservice;
 
+    /**
+     * Every user, streamed as one JSON array without loading the table in memory.
+     */
+    @GET
+    public StreamingOutput listAll(){
+        return userservice::writeAll;
+    }
+
+    /**
+     * One page of users with an id above {@code after}; pass the returned {@code next} for the next one.
+     */
     @GET
-    public  List<User> listAll(){
-        return userservice.findAll();
+    @Path("page")
+    public UserPage page(@QueryParam("after") @DefaultValue("0") long after,
+                         @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE) int limit){
+        return userservice.page(after, Math.max(1, Math.min(limit, MAX_PAGE)));
     }
 
 
@@ -24,4 +44,13 @@ public class UserResource {
         userservice.addUser(newUser.name, newUser.email);
     }
 
+    /**
+     * Bulk import of a JSON array of users, inserted in JDBC batches.
+     */
+    @POST
+    @Path("batch")
+    public IngestResult addUsers(InputStream body) throws IOException {
+        return userservice.importUsers(body);
+    }
+
 }
@@ -1,9 +1,8 @@
 package com.dim.service;
 
-import io.vertx.core.Vertx;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.redis.client.Redis;
 import io.vertx.redis.client.RedisAPI;
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.util.ArrayList;
@@ -13,57 +12,74 @@ import java.util.function.Consumer;
 @ApplicationScoped
 public class CacheService {
 
-    @Inject
-    Vertx vertx;
-
-    private RedisAPI redis;
+    private final RedisAPI redis;
+    private final RedisCommandMeter lpushMeter;
+    private final RedisCommandMeter ltrimMeter;
+    private final RedisCommandMeter lrangeMeter;
+    private final RedisCommandMeter setMeter;
+    private final RedisCommandMeter getMeter;
 
-    @PostConstruct
-    void init() {
-        Redis.createClient(vertx, "redis://localhost:6379").connect(ar -> {
-            if (ar.succeeded()) {
-                redis = RedisAPI.api(ar.result());
-            }
-        });
+    /**
+     * @param client default client of quarkus-redis-client (quarkus.redis.hosts); each command takes
+     *               a pooled connection, so the cache comes back by itself after a Redis outage
+     */
+    @Inject
+    public CacheService(Redis client, MeterRegistry registry) {
+        redis = RedisAPI.api(client);
+        lpushMeter = new RedisCommandMeter(registry, "lpush");
+        ltrimMeter = new RedisCommandMeter(registry, "ltrim");
+        lrangeMeter = new RedisCommandMeter(registry, "lrange");
+        setMeter = new RedisCommandMeter(registry, "set");
+        getMeter = new RedisCommandMeter(registry, "get");
     }
 
     /**
      * Cache les N derniers messages d'une room (liste Redis)
      */
     public void cacheMessage(String roomId, String message, int maxMessages) {
-        if (redis != null) {
-            String key = "room:messages:" + roomId;
-            redis.lpush(List.of(key, message));
-            redis.ltrim(key, "0", String.valueOf(maxMessages - 1));
-        }
+        String key = "room:messages:" + roomId;
+        long start = System.nanoTime();
+        lpushMeter.observe(start, redis.lpush(List.of(key, message)));
+        ltrimMeter.observe(start, redis.ltrim(key, "0", String.valueOf(maxMessages - 1)));
+    }
+
+    /**
+     * Cache plusieurs messages d'un coup, dans l'ordre chronologique (le dernier devient le plus récent)
+     */
+    public void cacheMessages(String roomId, List<String> messages, int maxMessages) {
+        if (messages.isEmpty()) return;
+        String key = "room:messages:" + roomId;
+        List<String> args = new ArrayList<>(messages.size() + 1);
+        args.add(key);
+        args.addAll(messages);
+        long start = System.nanoTime();
+        lpushMeter.observe(start, redis.lpush(args));
+        ltrimMeter.observe(start, redis.ltrim(key, "0", String.valueOf(maxMessages - 1)));
     }
 
+    /**
+     * Messages les plus récents en premier. Le callback reçoit une liste vide si Redis est indisponible.
+     */
     public void getRecentMessages(String roomId, int count, Consumer<List<String>> callback) {
-        if (redis != null) {
-            redis.lrange("room:messages:" + roomId, "0", String.valueOf(count - 1)).onSuccess(response -> {
-                List<String> messages = new ArrayList<>();
-                if (response != null) {
-                    response.forEach(r -> messages.add(r.toString()));
-                }
-                callback.accept(messages);
-            });
-        }
+        lrangeMeter.observe(System.nanoTime(), redis.lrange("room:messages:" + roomId, "0", String.valueOf(count - 1))).onComplete(ar -> {
+            List<String> messages = new ArrayList<>();
+            if (ar.succeeded() && ar.result() != null) {
+                ar.result().forEach(r -> messages.add(r.toString()));
+            }
+            callback.accept(messages);
+        });
     }
 
     /**
      * Stocke l'état d'une room (nombre de membres connectés, etc.)
      */
     public void setRoomState(String roomId, String state) {
-        if (redis != null) {
-            redis.set(List.of("room:state:" + roomId, state));
-        }
+        setMeter.observe(System.nanoTime(), redis.set(List.of("room:state:" + roomId, state)));
     }
 
     public void getRoomState(String roomId, Consumer<String> callback) {
-        if (redis != null) {
-            redis.get("room:state:" + roomId).onSuccess(response -> {
-                callback.accept(response != null ? response.toString() : null);
-            });
-        }
+        getMeter.observe(System.nanoTime(), redis.get("room:state:" + roomId)).onSuccess(response -> {
+            callback.accept(response != null ? response.toString() : null);
+        });
     }
 }
@@ -1,5 +1,7 @@
 package com.dim.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.bson.Document;
@@ -7,8 +9,8 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import java.time.Instant;
+import java.util.Map;
 
 @ApplicationScoped
 public class CallService {
@@ -16,23 +18,41 @@ public class CallService {
     @Inject
     MongoClient mongoClient;
 
+    @Inject
+    MeterRegistry registry;
+
+    private MongoWriteMeter writeMeter;
+
+    @PostConstruct
+    void init() {
+        writeMeter = new MongoWriteMeter(registry, "calls", "insertOne");
+    }
+
     /**
-     * Save call metadata (best-effort). The metadata JSON node is stored as a document.
+     * Save call metadata (best-effort). The parsed event body is stored as a document, without re-parsing.
      */
-    public void saveCallMetadata(String callId, String from, String to, JsonNode metadata) {
+    public void saveCallMetadata(String callId, String from, String to, Map<String, Object> metadata) {
+        long start = System.nanoTime();
         try {
             MongoDatabase db = mongoClient.getDatabase("scigal");
             MongoCollection<Document> coll = db.getCollection("calls");
-            Document doc = new Document();
-            doc.append("callId", callId);
-            doc.append("from", from);
-            doc.append("to", to);
-            doc.append("metadata", metadata == null ? null : Document.parse(metadata.toString()));
-            doc.append("timestamp", Instant.now().toString());
-            coll.insertOne(doc);
+            coll.insertOne(toDocument(callId, from, to, metadata));
         } catch (Exception e) {
+            writeMeter.failed(1);
             // best-effort: do not fail
             e.printStackTrace();
+        } finally {
+            writeMeter.record(start);
         }
     }
+
+    static Document toDocument(String callId, String from, String to, Map<String, Object> metadata) {
+        Document doc = new Document();
+        doc.append("callId", callId);
+        doc.append("from", from);
+        doc.append("to", to);
+        doc.append("metadata", metadata == null ? null : new Document(metadata));
+        doc.append("timestamp", Instant.now().toString());
+        return doc;
+    }
 }
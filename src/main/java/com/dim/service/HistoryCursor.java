@@ -0,0 +1,51 @@
+package com.dim.service;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Position in a room's history: the (timestamp, _id) of the oldest message of a page, sent to
+ * clients as "epochMillis-hexId". Messages are ordered by timestamp then _id, so messages sharing a
+ * timestamp are never skipped or repeated across pages.
+ */
+record HistoryCursor(Date timestamp, ObjectId id) {
+
+    /**
+     * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #format()}
+     */
+    static HistoryCursor parse(String cursor) {
+        int sep = cursor.indexOf('-');
+        if (sep <= 0 || !ObjectId.isValid(cursor.substring(sep + 1))) {
+            throw new IllegalArgumentException("invalid history cursor: " + cursor);
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(cursor, 0, sep, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid history cursor: " + cursor);
+        }
+        return new HistoryCursor(new Date(millis), new ObjectId(cursor.substring(sep + 1)));
+    }
+
+    static HistoryCursor of(Document message) {
+        return new HistoryCursor(MessageBuckets.timestampOf(message), message.getObjectId("_id"));
+    }
+
+    String format() {
+        return timestamp.getTime() + "-" + id.toHexString();
+    }
+
+    /**
+     * Flat layout: messages of a room before this cursor. An upper bound on timestamp for the index
+     * range, the ties on timestamp are filtered on the index keys instead of a $or that would need
+     * two scans.
+     */
+    Bson olderThan(String room) {
+        return Filters.and(Filters.eq("room", room), Filters.lte("timestamp", timestamp),
+            Filters.nor(Filters.and(Filters.eq("timestamp", timestamp), Filters.gte("_id", id))));
+    }
+}
@@ -0,0 +1,92 @@
+package com.dim.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages from the flat layout ('messages', one document per message) to the bucketed one
+ * ('message_buckets'), for switching scigal.message-writer.layout to BUCKETED:
+ *
+ * <pre>mvn -Pbucket-migration test [-Dmigrate.args="-Dmigrate.mongo-uri=mongodb://host:27017"]</pre>
+ *
+ * Window and bucket size must match the server's scigal.message-writer.bucket-* settings
+ * (-Dmigrate.window-seconds, -Dmigrate.max-messages). Each batch is deleted from 'messages' once
+ * its buckets are written, so an interrupted migration resumes where it stopped; only a batch
+ * interrupted between the two steps is migrated twice. Servers may keep running, already in
+ * BUCKETED mode: migrated messages join the buckets of their windows.
+ */
+public final class MessageBucketMigration {
+
+    private static final Logger LOG = Logger.getLogger(MessageBucketMigration.class);
+
+    private MessageBucketMigration() {}
+
+    public static void main(String[] args) {
+        String uri = System.getProperty("migrate.mongo-uri",
+            System.getenv().getOrDefault("QUARKUS_MONGODB_CONNECTION_STRING", "mongodb://localhost:27017"));
+        String database = System.getProperty("migrate.database", "scigal");
+        long windowMs = TimeUnit.SECONDS.toMillis(Long.getLong("migrate.window-seconds", 3600));
+        int max = Integer.getInteger("migrate.max-messages", 200);
+        int batchSize = Integer.getInteger("migrate.batch-size", 5000);
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoCollection<Document> flat = client.getDatabase(database).getCollection("messages");
+            MongoCollection<Document> buckets = client.getDatabase(database).getCollection(MessageBuckets.COLLECTION);
+            buckets.createIndex(MessageBuckets.INDEX);
+            long total = migrate(flat, buckets, windowMs, max, batchSize);
+            LOG.infof("migrated %d messages to %s", total, MessageBuckets.COLLECTION);
+        }
+    }
+
+    static long migrate(MongoCollection<Document> flat, MongoCollection<Document> buckets,
+                        long windowMs, int max, int batchSize) {
+        long total = 0;
+        List<Document> batch = new ArrayList<>(batchSize);
+        // the history index read backwards: rooms one after the other, oldest message first
+        try (MongoCursor<Document> it = flat.find()
+                .sort(Sorts.orderBy(Sorts.descending("room"), Sorts.ascending("timestamp", "_id")))
+                .batchSize(batchSize).iterator()) {
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() >= batchSize) {
+                    total += moveBatch(flat, buckets, batch, windowMs, max);
+                    batch.clear();
+                    LOG.infof("%d messages migrated", total);
+                }
+            }
+        }
+        total += moveBatch(flat, buckets, batch, windowMs, max);
+        return total;
+    }
+
+    private static int moveBatch(MongoCollection<Document> flat, MongoCollection<Document> buckets,
+                                 List<Document> batch, long windowMs, int max) {
+        if (batch.isEmpty()) return 0;
+        List<MessageBuckets.Bucket> grouped = MessageBuckets.group(batch, windowMs, max);
+        List<WriteModel<Document>> upserts = new ArrayList<>(grouped.size());
+        for (MessageBuckets.Bucket bucket : grouped) {
+            upserts.add(MessageBuckets.upsert(bucket, max));
+        }
+        // ordered: a failure stops the migration before the batch is deleted
+        buckets.bulkWrite(upserts, new BulkWriteOptions().ordered(true));
+        List<ObjectId> ids = new ArrayList<>(batch.size());
+        for (Document doc : batch) {
+            ids.add(doc.getObjectId("_id"));
+        }
+        flat.deleteMany(Filters.in("_id", ids));
+        return batch.size();
+    }
+}
@@ -0,0 +1,171 @@
+package com.dim.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Bucketed message layout: one document per room and time window holding at most a fixed number
+ * of messages, appended to with $push upserts.
+ *
+ * <pre>{ room, start: window start (date), count, last: {timestamp, _id} of its newest message,
+ *   messages: [{_id, from, payload, timestamp}] }</pre>
+ *
+ * An upsert only matches a bucket of its window with room left for all its messages, so a busy
+ * window simply gets several buckets. Messages are only ordered at read time: buckets written
+ * concurrently by several instances, or by a migration, may interleave. 'last' bounds what a bucket
+ * holds, so a read stops at the first bucket that cannot hold anything newer than what it has.
+ */
+final class MessageBuckets {
+
+    static final String COLLECTION = "message_buckets";
+    static final Bson INDEX = Indexes.compoundIndex(Indexes.ascending("room"), Indexes.descending("start", "last"));
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final Bson FIELDS = Projections.include("start", "last", "messages");
+    private static final Bson SORT = Sorts.descending("start", "last");
+    private static final Comparator<Document> OLDEST_FIRST = Comparator
+        .comparing((Document m) -> m.getDate("timestamp"))
+        .thenComparing(m -> m.getObjectId("_id"));
+    private static final Comparator<Document> NEWEST_FIRST = OLDEST_FIRST.reversed();
+    // bound of a bucket written before 'last' existed: anything up to the end of its window
+    private static final ObjectId MAX_ID = new ObjectId("ffffffffffffffffffffffff");
+
+    /**
+     * Messages of one room and window, to be appended to the same bucket.
+     */
+    record Bucket(String room, Date start, List<Document> messages) {}
+
+    private MessageBuckets() {}
+
+    static Date windowStart(Date timestamp, long windowMs) {
+        long t = timestamp.getTime();
+        return new Date(t - Math.floorMod(t, windowMs));
+    }
+
+    /**
+     * Group flat message documents by room and window, keeping their order, at most {@code max}
+     * per bucket. The original _id is kept when there is one, so history cursors stay valid.
+     */
+    static List<Bucket> group(List<Document> docs, long windowMs, int max) {
+        List<Bucket> buckets = new ArrayList<>();
+        Map<String, Bucket> open = new LinkedHashMap<>();
+        for (Document doc : docs) {
+            Date timestamp = timestampOf(doc);
+            Date start = windowStart(timestamp, windowMs);
+            String key = doc.getString("room") + '\u0000' + start.getTime();
+            Bucket bucket = open.get(key);
+            if (bucket == null || bucket.messages().size() >= max) {
+                bucket = new Bucket(doc.getString("room"), start, new ArrayList<>(Math.min(max, docs.size())));
+                open.put(key, bucket);
+                buckets.add(bucket);
+            }
+            ObjectId id = doc.getObjectId("_id");
+            bucket.messages().add(new Document("_id", id != null ? id : new ObjectId())
+                .append("from", doc.getString("from"))
+                .append("payload", doc.getString("payload"))
+                .append("timestamp", timestamp));
+        }
+        return buckets;
+    }
+
+    /**
+     * Append a bucket's messages to a bucket of its window with enough room left, or create one.
+     */
+    static UpdateOneModel<Document> upsert(Bucket bucket, int max) {
+        int n = bucket.messages().size();
+        Document newest = bucket.messages().stream().max(OLDEST_FIRST).orElseThrow();
+        // room and start are copied from the equality filter when the upsert inserts
+        Bson filter = Filters.and(Filters.eq("room", bucket.room()), Filters.eq("start", bucket.start()),
+            Filters.lte("count", max - n));
+        // embedded documents compare field by field: timestamp, then _id
+        Bson update = Updates.combine(Updates.pushEach("messages", bucket.messages()), Updates.inc("count", n),
+            Updates.max("last", new Document("timestamp", newest.getDate("timestamp")).append("_id", newest.getObjectId("_id"))));
+        return new UpdateOneModel<>(filter, update, UPSERT);
+    }
+
+    /**
+     * Up to {@code limit} messages of a room older than the cursor, all of them when it is null,
+     * most recent first.
+     */
+    static List<Document> newestFirst(MongoCollection<Document> buckets, String room, HistoryCursor before,
+                                      int limit, long windowMs) {
+        Bson filter = Filters.eq("room", room);
+        if (before != null) {
+            filter = Filters.and(filter, Filters.lte("start", windowStart(before.timestamp(), windowMs)));
+        }
+        try (MongoCursor<Document> it = buckets.find(filter).projection(FIELDS).sort(SORT).batchSize(4).iterator()) {
+            return newestFirst(it, before, limit, windowMs);
+        }
+    }
+
+    /**
+     * Same, over a room's buckets sorted by start then last, both descending. Each bucket's bound
+     * ('last', or the end of its window when it has none) is then an upper bound of every bucket
+     * after it: reading stops as soon as {@code limit} messages newer than it are held.
+     */
+    static List<Document> newestFirst(Iterator<Document> buckets, HistoryCursor before, int limit, long windowMs) {
+        if (limit <= 0) return new ArrayList<>();
+        // the newest messages seen so far, oldest at the head
+        PriorityQueue<Document> kept = new PriorityQueue<>(limit + 1, OLDEST_FIRST);
+        while (buckets.hasNext()) {
+            Document bucket = buckets.next();
+            if (kept.size() >= limit && OLDEST_FIRST.compare(kept.peek(), bound(bucket, windowMs)) > 0) break;
+            for (Document m : bucket.getList("messages", Document.class)) {
+                if (before != null && !olderThan(m, before)) continue;
+                kept.add(m);
+                if (kept.size() > limit) kept.poll();
+            }
+        }
+        List<Document> out = new ArrayList<>(kept);
+        out.sort(NEWEST_FIRST);
+        return out;
+    }
+
+    private static Document bound(Document bucket, long windowMs) {
+        Document last = bucket.get("last", Document.class);
+        if (last != null) return last;
+        return new Document("timestamp", new Date(bucket.getDate("start").getTime() + windowMs)).append("_id", MAX_ID);
+    }
+
+    private static boolean olderThan(Document m, HistoryCursor before) {
+        int c = m.getDate("timestamp").compareTo(before.timestamp());
+        return c < 0 || (c == 0 && m.getObjectId("_id").compareTo(before.id()) < 0);
+    }
+
+    /**
+     * Flat documents written before timestamps were dates hold an ISO string; the _id is the last resort.
+     */
+    static Date timestampOf(Document doc) {
+        Object ts = doc.get("timestamp");
+        if (ts instanceof Date date) return date;
+        if (ts instanceof String iso) {
+            try {
+                return Date.from(Instant.parse(iso));
+            } catch (RuntimeException e) {
+                // fall through
+            }
+        }
+        ObjectId id = doc.getObjectId("_id");
+        return id != null ? id.getDate() : new Date();
+    }
+}
@@ -1,34 +1,507 @@
 package com.dim.service;
 
-import com.dim.model.Message;
+import com.dim.config.MessageWriterConfig;
+import com.dim.config.MessageWriterConfig.Layout;
+import com.dim.model.MessagePage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.jboss.logging.Logger;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.bulk.BulkWriteError;
 
-import java.time.Instant;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Persists chat messages through a write-behind pipeline: {@link #saveMessage} only enqueues,
+ * a single writer thread flushes batches with unordered insertMany, or with the BUCKETED layout
+ * appends them to per-room time-window buckets (see {@link MessageBuckets}).
+ *
+ * History reads are keyset-paginated on (room, timestamp, _id), served by one compound index
+ * created by the writer thread at startup (one per layout). With the flat layout it first converts
+ * the ISO string timestamps of older documents to dates, which range queries on dates cannot see.
+ */
 @ApplicationScoped
 public class MessageService {
 
+    private static final Logger LOG = Logger.getLogger(MessageService.class);
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+    private static final BulkWriteOptions UNORDERED_BULK = new BulkWriteOptions().ordered(false);
+    private static final String HISTORY_INDEX_NAME = "room_timestamp_id";
+    private static final Bson HISTORY_INDEX = Indexes.compoundIndex(
+        Indexes.ascending("room"), Indexes.descending("timestamp", "_id"));
+    private static final Bson HISTORY_SORT = Sorts.descending("timestamp", "_id");
+    // the room is known to the caller, _id comes along by default
+    private static final Bson HISTORY_FIELDS = Projections.include("from", "payload", "timestamp");
+
     @Inject
     MongoClient mongoClient;
 
+    @Inject
+    MessageWriterConfig writerConfig;
+
+    @Inject
+    MeterRegistry registry;
+
+    private BlockingQueue<Document> queue;
+    private Thread writer;
+    private volatile boolean running;
+    // SPILL policy: the spill file is only written, rotated and closed by this single thread
+    private ThreadPoolExecutor spiller;
+    private BufferedWriter spillOut;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private MongoWriteMeter writeMeter;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(writerConfig.queueCapacity());
+        writeMeter = bucketed()
+            ? new MongoWriteMeter(registry, MessageBuckets.COLLECTION, "bulkWrite")
+            : new MongoWriteMeter(registry, "messages", "insertMany");
+        Gauge.builder("scigal.messages.queue", this, MessageService::getQueueDepth)
+            .description("Messages waiting for the writer")
+            .register(registry);
+        FunctionCounter.builder("scigal.messages.overflow", this, MessageService::getDroppedCount)
+            .description("Messages that did not fit in the writer queue")
+            .tag("outcome", "dropped")
+            .register(registry);
+        FunctionCounter.builder("scigal.messages.overflow", this, MessageService::getSpilledCount)
+            .description("Messages that did not fit in the writer queue")
+            .tag("outcome", "spilled")
+            .register(registry);
+        spiller = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(writerConfig.queueCapacity()),
+            Thread.ofPlatform().name("scigal-message-spill").daemon().factory(),
+            (task, executor) -> {
+                // a rotation nobody will run: its caller must not wait for it
+                if (task instanceof Future<?> rotation) rotation.cancel(false);
+                else dropped.incrementAndGet();
+            });
+        running = true;
+        writer = Thread.ofPlatform().name("scigal-message-writer").daemon().start(this::runWriter);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // le writer voit running=false au prochain poll et vide la file
+        running = false;
+        try {
+            writer.join(writerConfig.shutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            LOG.warnf("message writer did not drain in time, %d messages left in queue", queue.size());
+        }
+        spiller.execute(this::closeSpill);
+        spiller.shutdown();
+        try {
+            spiller.awaitTermination(writerConfig.shutdownTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MongoCollection<Document> getCollection() {
+        MongoDatabase db = mongoClient.getDatabase("scigal");
+        return db.getCollection("messages");
+    }
+
+    private MongoCollection<Document> getBuckets() {
+        return mongoClient.getDatabase("scigal").getCollection(MessageBuckets.COLLECTION);
+    }
+
+    private boolean bucketed() {
+        return writerConfig.layout() == Layout.BUCKETED;
+    }
+
+    private long windowMs() {
+        return TimeUnit.SECONDS.toMillis(writerConfig.bucketWindowSeconds());
+    }
+
+    /**
+     * Enqueue a message for persistence. Never touches MongoDB on the calling thread,
+     * except with the BLOCK policy which may wait briefly for room in the queue.
+     */
     public void saveMessage(String room, String from, String payload) {
+        Document doc = toDocument(room, from, payload);
+        if (!queue.offer(doc)) {
+            onOverflow(doc);
+        }
+    }
+
+    static Document toDocument(String room, String from, String payload) {
+        Document doc = new Document();
+        doc.append("room", room);
+        doc.append("from", from);
+        doc.append("payload", payload);
+        doc.append("timestamp", new Date());
+        return doc;
+    }
+
+    /**
+     * Last {@code limit} persisted messages of a room, most recent first.
+     */
+    public List<Document> getRecentMessages(String room, int limit) {
+        return newestFirst(room, null, limit);
+    }
+
+    /**
+     * Up to {@code limit} messages of a room older than the {@code before} cursor (the latest ones
+     * without a cursor), oldest first. With the flat layout each page is a single bounded scan of the
+     * history index, with no in-memory sort, however long the room's history is; with buckets it reads
+     * the few windows the page spans.
+     *
+     * @throws IllegalArgumentException if {@code before} is not a cursor returned by this method
+     */
+    public MessagePage getHistory(String room, String before, int limit) {
+        HistoryCursor cursor = before != null ? HistoryCursor.parse(before) : null;
+        // one extra document tells whether there is an older page
+        List<Document> docs = newestFirst(room, cursor, limit + 1);
+        boolean more = docs.size() > limit;
+        if (more) docs.remove(limit);
+        List<MessagePage.Entry> entries = new ArrayList<>(docs.size());
+        for (int i = docs.size() - 1; i >= 0; i--) {
+            Document doc = docs.get(i);
+            entries.add(new MessagePage.Entry(doc.getObjectId("_id").toHexString(), doc.getString("from"),
+                doc.getString("payload"), isoTimestamp(doc.get("timestamp"))));
+        }
+        String next = null;
+        if (more && !docs.isEmpty()) {
+            next = HistoryCursor.of(docs.get(docs.size() - 1)).format();
+        }
+        return new MessagePage(room, entries, next);
+    }
+
+    /**
+     * Up to {@code limit} messages of a room older than the cursor, all of them when it is null,
+     * most recent first.
+     */
+    private List<Document> newestFirst(String room, HistoryCursor cursor, int limit) {
+        if (bucketed()) {
+            return MessageBuckets.newestFirst(getBuckets(), room, cursor, limit, windowMs());
+        }
+        Bson filter = cursor == null ? Filters.eq("room", room) : cursor.olderThan(room);
+        List<Document> docs = new ArrayList<>(limit);
+        getCollection().find(filter)
+            .projection(HISTORY_FIELDS)
+            .sort(HISTORY_SORT)
+            .limit(limit)
+            .into(docs);
+        return docs;
+    }
+
+    /**
+     * Stored timestamps are BSON dates; documents written before that hold an ISO string until
+     * MessageTimestampMigration converts them.
+     */
+    static String isoTimestamp(Object ts) {
+        if (ts instanceof Date date) return date.toInstant().toString();
+        return ts == null ? null : ts.toString();
+    }
+
+    private void ensureIndexes() {
+        try {
+            if (bucketed()) {
+                getBuckets().createIndex(MessageBuckets.INDEX);
+            } else {
+                getCollection().createIndex(HISTORY_INDEX, new IndexOptions().name(HISTORY_INDEX_NAME));
+            }
+        } catch (Exception e) {
+            LOG.warnf(e, "unable to create the history index (%s layout)", writerConfig.layout());
+        }
+    }
+
+    private void onOverflow(Document doc) {
+        switch (writerConfig.overflowPolicy()) {
+            case BLOCK:
+                try {
+                    if (queue.offer(doc, writerConfig.blockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.incrementAndGet();
+                break;
+            case SPILL:
+                spill(doc);
+                break;
+            case DROP:
+            default:
+                dropped.incrementAndGet();
+                break;
+        }
+    }
+
+    private void runWriter() {
+        // idempotent, and off the startup thread: a slow MongoDB does not hold the boot
+        ensureIndexes();
+        List<Document> batch = new ArrayList<>(writerConfig.batchSize());
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(writerConfig.flushIntervalMs());
+        while (running || !queue.isEmpty()) {
+            try {
+                Document first = queue.poll(writerConfig.flushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpill();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < writerConfig.batchSize()) {
+                    if (queue.drainTo(batch, writerConfig.batchSize() - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Document next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // arrêt demandé: on vide ce qui reste sans attendre
+                queue.drainTo(batch, writerConfig.batchSize() - batch.size());
+            }
+            writeBatch(batch);
+            batch.clear();
+        }
+        replaySpill();
+    }
+
+    /**
+     * @return false when the batch could not be written at all (documents rejected one by one
+     *         are counted as failed, not retried)
+     */
+    private boolean writeBatch(List<Document> batch) {
+        if (batch.isEmpty()) return true;
+        if (bucketed()) {
+            return writeBuckets(batch);
+        }
+        long start = System.nanoTime();
         try {
-            MongoDatabase db = mongoClient.getDatabase("scigal");
-            MongoCollection<Document> coll = db.getCollection("messages");
-            Document doc = new Document();
-            doc.append("room", room);
-            doc.append("from", from);
-            doc.append("payload", payload);
-            doc.append("timestamp", Instant.now().toString());
-            coll.insertOne(doc);
+            getCollection().insertMany(batch, UNORDERED);
+            written.addAndGet(batch.size());
+        } catch (MongoBulkWriteException e) {
+            int errors = e.getWriteErrors().size();
+            written.addAndGet(batch.size() - errors);
+            failed.addAndGet(errors);
+            writeMeter.failed(errors);
+            LOG.warnf("message batch partially failed: %d/%d documents rejected", errors, batch.size());
         } catch (Exception e) {
-            // swallow - persistence failure should not break routing; log in real app
-            e.printStackTrace();
+            failed.addAndGet(batch.size());
+            writeMeter.failed(batch.size());
+            LOG.warnf(e, "message batch of %d documents failed", batch.size());
+            return false;
+        } finally {
+            writeMeter.record(start);
+        }
+        return true;
+    }
+
+    /**
+     * One $push upsert per room and window of the batch instead of one document per message.
+     */
+    private boolean writeBuckets(List<Document> batch) {
+        long start = System.nanoTime();
+        List<MessageBuckets.Bucket> buckets = MessageBuckets.group(batch, windowMs(), writerConfig.bucketMaxMessages());
+        List<WriteModel<Document>> upserts = new ArrayList<>(buckets.size());
+        for (MessageBuckets.Bucket bucket : buckets) {
+            upserts.add(MessageBuckets.upsert(bucket, writerConfig.bucketMaxMessages()));
+        }
+        try {
+            getBuckets().bulkWrite(upserts, UNORDERED_BULK);
+            written.addAndGet(batch.size());
+        } catch (MongoBulkWriteException e) {
+            int errors = 0;
+            for (BulkWriteError error : e.getWriteErrors()) {
+                errors += buckets.get(error.getIndex()).messages().size();
+            }
+            written.addAndGet(batch.size() - errors);
+            failed.addAndGet(errors);
+            writeMeter.failed(errors);
+            LOG.warnf("message bucket batch partially failed: %d/%d messages rejected", errors, batch.size());
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            writeMeter.failed(batch.size());
+            LOG.warnf(e, "message bucket batch of %d messages failed", batch.size());
+            return false;
+        } finally {
+            writeMeter.record(start);
+        }
+        return true;
+    }
+
+    /**
+     * Hand an overflowing message to the spill thread; the caller never touches the file.
+     */
+    private void spill(Document doc) {
+        spiller.execute(() -> appendSpill(doc));
+    }
+
+    private void appendSpill(Document doc) {
+        try {
+            if (spillOut == null) {
+                spillOut = Files.newBufferedWriter(Path.of(writerConfig.spillFile()), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spillOut.write(doc.toJson());
+            spillOut.newLine();
+            spilled.incrementAndGet();
+            // flushed once the burst is over rather than per message
+            if (spiller.getQueue().isEmpty()) spillOut.flush();
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+            LOG.debug("message spill failed", e);
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spillOut == null) return;
+        try {
+            spillOut.close();
+        } catch (IOException e) {
+            LOG.debug("unable to close the message spill file", e);
         }
+        spillOut = null;
+    }
+
+    /**
+     * Runs on the spill thread: hands the spilled messages over for replay, unless a previous replay
+     * is still unfinished, which then goes first.
+     *
+     * @return whether there is a replay file to read
+     */
+    private boolean rotateSpill() throws IOException {
+        Path replayFile = Path.of(writerConfig.spillFile() + ".replay");
+        if (Files.exists(replayFile)) return true;
+        closeSpill();
+        Path spillFile = Path.of(writerConfig.spillFile());
+        if (!Files.exists(spillFile) || Files.size(spillFile) == 0) return false;
+        Files.move(spillFile, replayFile);
+        return true;
+    }
+
+    /**
+     * Re-inject spilled messages once the writer is idle. The replay file belongs to the writer
+     * thread: when a batch cannot be written it is cut down to that batch and what follows, and
+     * retried at the next idle time.
+     */
+    private void replaySpill() {
+        try {
+            if (!spiller.submit(this::rotateSpill).get()) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | CancellationException e) {
+            LOG.debug("unable to rotate message spill file", e);
+            return;
+        }
+        Path replayFile = Path.of(writerConfig.spillFile() + ".replay");
+        List<Document> batch = new ArrayList<>(writerConfig.batchSize());
+        try (BufferedReader in = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            List<String> lines = new ArrayList<>(writerConfig.batchSize());
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                lines.add(line);
+                batch.add(Document.parse(line));
+                if (batch.size() >= writerConfig.batchSize()) {
+                    if (!writeBatch(batch)) {
+                        keepForReplay(replayFile, lines, in);
+                        return;
+                    }
+                    batch.clear();
+                    lines.clear();
+                }
+            }
+            if (!writeBatch(batch)) {
+                keepForReplay(replayFile, lines, in);
+                return;
+            }
+        } catch (IOException e) {
+            LOG.warn("message spill replay failed", e);
+            return;
+        }
+        try {
+            Files.deleteIfExists(replayFile);
+        } catch (IOException e) {
+            LOG.warn("unable to delete the message spill replay file", e);
+        }
+    }
+
+    /**
+     * Rewrite the replay file with the lines of the failed batch and the ones not read yet.
+     */
+    private void keepForReplay(Path replayFile, List<String> failed, BufferedReader rest) throws IOException {
+        Path tmp = Path.of(replayFile + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String line : failed) {
+                out.write(line);
+                out.newLine();
+            }
+            rest.transferTo(out);
+        }
+        Files.move(tmp, replayFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.warnf("message spill replay interrupted, %d messages kept for the next attempt", failed.size());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
     }
 }
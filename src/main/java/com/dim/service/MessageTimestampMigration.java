@@ -0,0 +1,49 @@
+package com.dim.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Converts the ISO string timestamps of flat messages ('messages') written before timestamps were
+ * BSON dates:
+ *
+ * <pre>mvn -Ptimestamp-migration test [-Dmigrate.args="-Dmigrate.mongo-uri=mongodb://host:27017"]</pre>
+ *
+ * Dates sort after strings and a date bound never matches a string, so history pages cannot get
+ * past messages that still hold a string. The conversion scans the whole collection once, which is
+ * why it is not run at startup; servers may keep running meanwhile. Unparseable strings are left as
+ * is, running it again only touches what is left.
+ */
+public final class MessageTimestampMigration {
+
+    private static final Logger LOG = Logger.getLogger(MessageTimestampMigration.class);
+
+    private MessageTimestampMigration() {}
+
+    public static void main(String[] args) {
+        String uri = System.getProperty("migrate.mongo-uri",
+            System.getenv().getOrDefault("QUARKUS_MONGODB_CONNECTION_STRING", "mongodb://localhost:27017"));
+        String database = System.getProperty("migrate.database", "scigal");
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            long converted = migrate(client.getDatabase(database).getCollection("messages"));
+            LOG.infof("%d message timestamps converted to dates", converted);
+        }
+    }
+
+    static long migrate(MongoCollection<Document> flat) {
+        Document toDate = new Document("$convert", new Document("input", "$timestamp")
+            .append("to", "date").append("onError", "$timestamp"));
+        UpdateResult result = flat.updateMany(Filters.type("timestamp", BsonType.STRING),
+            List.of(new Document("$set", new Document("timestamp", toDate))));
+        return result.getModifiedCount();
+    }
+}
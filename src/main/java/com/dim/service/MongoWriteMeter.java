@@ -0,0 +1,40 @@
+package com.dim.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and failed documents of one kind of MongoDB write, tagged by collection and operation.
+ * Meters are created once; recording does not allocate.
+ */
+final class MongoWriteMeter {
+
+    private final Timer latency;
+    private final Counter failures;
+
+    MongoWriteMeter(MeterRegistry registry, String collection, String operation) {
+        latency = Timer.builder("scigal.mongo.write")
+            .description("MongoDB write duration")
+            .tags("collection", collection, "operation", operation)
+            .publishPercentileHistogram()
+            .register(registry);
+        failures = Counter.builder("scigal.mongo.write.failures")
+            .description("Documents rejected by MongoDB writes")
+            .tags("collection", collection, "operation", operation)
+            .register(registry);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} taken before the write
+     */
+    void record(long startNanos) {
+        latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void failed(long documents) {
+        failures.increment(documents);
+    }
+}
@@ -0,0 +1,121 @@
+package com.dim.service;
+
+import com.dim.config.PersistenceDispatchConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs blocking persistence side effects off the netty-socketio event loop.
+ *
+ * Tasks are striped by key over single-threaded lanes with bounded queues, so tasks sharing a key
+ * (a room, a user) run in submission order. A full lane rejects the task instead of blocking the caller.
+ */
+@ApplicationScoped
+public class PersistenceDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(PersistenceDispatcher.class);
+
+    @Inject
+    PersistenceDispatchConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ThreadPoolExecutor[] lanes;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        lanes = new ThreadPoolExecutor[config.lanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.laneCapacity()),
+                Thread.ofPlatform().name("scigal-persistence-" + i).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        }
+        Gauge.builder("scigal.persistence.queue", this, PersistenceDispatcher::getQueueDepth)
+            .description("Persistence tasks waiting in the lanes")
+            .register(registry);
+        FunctionCounter.builder("scigal.persistence.tasks", this, PersistenceDispatcher::getRejectedCount)
+            .description("Persistence tasks that did not complete")
+            .tag("outcome", "rejected")
+            .register(registry);
+        FunctionCounter.builder("scigal.persistence.tasks", this, PersistenceDispatcher::getFailedCount)
+            .description("Persistence tasks that did not complete")
+            .tag("outcome", "failed")
+            .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.shutdownTimeoutMs());
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = getQueueDepth();
+        if (left > 0) {
+            LOG.warnf("persistence lanes did not drain in time, %d tasks dropped", left);
+        }
+    }
+
+    /**
+     * Run {@code task} after every task previously dispatched with the same key.
+     *
+     * @return false when the lane is saturated and the task was dropped
+     */
+    public boolean dispatch(String key, Runnable task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(key == null ? 0 : key.hashCode(), lanes.length)];
+        try {
+            lane.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    failed.increment();
+                    LOG.debugf(e, "persistence task failed (key %s)", key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            LOG.debugf("persistence lane saturated, task dropped (key %s)", key);
+            return false;
+        }
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+}
@@ -0,0 +1,40 @@
+package com.dim.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency and failures of one Redis command, tagged by command name.
+ * Services sharing a command share the meters (the registry returns the existing ones).
+ */
+final class RedisCommandMeter {
+
+    private final Timer latency;
+    private final Counter failures;
+
+    RedisCommandMeter(MeterRegistry registry, String command) {
+        latency = Timer.builder("scigal.redis.command")
+            .description("Redis command round trip")
+            .tag("command", command)
+            .publishPercentileHistogram()
+            .register(registry);
+        failures = Counter.builder("scigal.redis.command.failures")
+            .description("Failed Redis commands")
+            .tag("command", command)
+            .register(registry);
+    }
+
+    /**
+     * Time the reply of a command sent at {@code startNanos}.
+     */
+    <T> Future<T> observe(long startNanos, Future<T> reply) {
+        return reply.onComplete(ar -> {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (ar.failed()) failures.increment();
+        });
+    }
+}
@@ -0,0 +1,265 @@
+package com.dim.service;
+
+import com.dim.config.RoomHistoryConfig;
+import com.dim.model.MessagePage;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Recent history of each room, replayed to clients on join.
+ *
+ * L1 is an in-process ring buffer per room, evicted LRU by room under a memory budget.
+ * L2 is the Redis list kept by {@link CacheService}; MongoDB is only read when both miss.
+ * Concurrent joins on a cold room share a single L2/Mongo load.
+ */
+@ApplicationScoped
+public class RoomHistoryService {
+
+    private static final Logger LOG = Logger.getLogger(RoomHistoryService.class);
+    // per-entry overhead estimate (String header + array slot)
+    private static final int ENTRY_OVERHEAD = 56;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    CacheService cacheService;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    RoomHistoryConfig config;
+
+    // access-ordered: iteration starts at the least recently used room (guarded by this)
+    private final LinkedHashMap<String, Ring> rooms = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, List<Consumer<List<String>>>> loading = new HashMap<>();
+    private long usedBytes;
+
+    private final AtomicLong l1Hits = new AtomicLong();
+    private final AtomicLong l2Loads = new AtomicLong();
+    private final AtomicLong mongoLoads = new AtomicLong();
+
+    /**
+     * Record a message sent through this instance: L1 and the Redis list.
+     */
+    public void record(String room, String from, String payload) {
+        if (room == null || config.replaySize() <= 0) return;
+        String entry = entry(room, from, payload, Instant.now().toString());
+        append(room, entry);
+        cacheService.cacheMessage(room, entry, config.redisListSize());
+    }
+
+    /**
+     * Record a message relayed from another instance: L1 only, the origin already wrote the Redis list.
+     */
+    public void recordRemote(String room, String from, String payload) {
+        if (room == null || config.replaySize() <= 0) return;
+        append(room, entry(room, from, payload, Instant.now().toString()));
+    }
+
+    /**
+     * Deliver the last messages of a room, oldest first. Served from L1 when the room is warm.
+     */
+    public void replay(String room, Consumer<List<String>> callback) {
+        if (room == null || config.replaySize() <= 0) return;
+        List<String> snapshot;
+        synchronized (this) {
+            Ring ring = rooms.get(room);
+            if (ring == null) {
+                List<Consumer<List<String>>> waiters = loading.get(room);
+                if (waiters != null) {
+                    waiters.add(callback);
+                    return;
+                }
+                waiters = new ArrayList<>();
+                waiters.add(callback);
+                loading.put(room, waiters);
+                snapshot = null;
+            } else {
+                snapshot = ring.snapshot();
+            }
+        }
+        if (snapshot != null) {
+            l1Hits.incrementAndGet();
+            callback.accept(snapshot);
+        } else {
+            load(room);
+        }
+    }
+
+    /**
+     * Older history, page by page, straight from MongoDB (blocking). A null or non-positive
+     * {@code limit} means the default page size; larger ones are capped.
+     *
+     * @throws IllegalArgumentException if {@code before} is not a cursor from a previous page
+     */
+    public MessagePage page(String room, String before, Integer limit) {
+        int size = limit == null || limit <= 0 ? config.pageSize() : Math.min(limit, config.maxPageSize());
+        return messageService.getHistory(room, before, size);
+    }
+
+    /**
+     * {@link #page} off the event loop. Pages requested concurrently are not ordered.
+     */
+    public Future<MessagePage> pageAsync(String room, String before, Integer limit) {
+        return vertx.executeBlocking(() -> page(room, before, limit), false);
+    }
+
+    private void load(String room) {
+        cacheService.getRecentMessages(room, config.replaySize(), newestFirst -> {
+            if (!newestFirst.isEmpty()) {
+                l2Loads.incrementAndGet();
+                List<String> history = new ArrayList<>(newestFirst);
+                Collections.reverse(history);
+                complete(room, history);
+                return;
+            }
+            // cold room: MongoDB, off the event loop
+            vertx.executeBlocking(() -> fromMongo(room), false).onComplete(ar -> {
+                List<String> history = ar.succeeded() ? ar.result() : List.of();
+                if (ar.failed()) {
+                    LOG.debugf(ar.cause(), "history load failed for room %s", room);
+                } else {
+                    mongoLoads.incrementAndGet();
+                    cacheService.cacheMessages(room, history, config.redisListSize());
+                }
+                complete(room, history);
+            });
+        });
+    }
+
+    private List<String> fromMongo(String room) {
+        List<Document> docs = messageService.getRecentMessages(room, config.replaySize());
+        List<String> history = new ArrayList<>(docs.size());
+        for (int i = docs.size() - 1; i >= 0; i--) {
+            Document doc = docs.get(i);
+            history.add(entry(room, doc.getString("from"), doc.getString("payload"),
+                MessageService.isoTimestamp(doc.get("timestamp"))));
+        }
+        return history;
+    }
+
+    private void complete(String room, List<String> history) {
+        List<Consumer<List<String>>> waiters;
+        List<String> snapshot;
+        synchronized (this) {
+            waiters = loading.remove(room);
+            Ring ring = rooms.get(room);
+            if (ring == null) {
+                ring = new Ring(config.replaySize());
+                rooms.put(room, ring);
+            }
+            for (String entry : history) {
+                usedBytes += ring.add(entry);
+            }
+            snapshot = ring.snapshot();
+            evict();
+        }
+        if (waiters != null) {
+            waiters.forEach(w -> w.accept(snapshot));
+        }
+    }
+
+    private synchronized void append(String room, String entry) {
+        // only warm rooms are appended to: a partial ring would be served as complete history
+        Ring ring = rooms.get(room);
+        if (ring == null) return;
+        usedBytes += ring.add(entry);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Ring>> it = rooms.entrySet().iterator();
+        while (usedBytes > config.memoryBudgetBytes() && it.hasNext()) {
+            usedBytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    private static String entry(String room, String from, String payload, String timestamp) {
+        return new JsonObject()
+            .put("room", room)
+            .put("from", from)
+            .put("payload", payload)
+            .put("timestamp", timestamp)
+            .encode();
+    }
+
+    public synchronized int getCachedRooms() {
+        return rooms.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getL1Hits() {
+        return l1Hits.get();
+    }
+
+    public long getL2Loads() {
+        return l2Loads.get();
+    }
+
+    public long getMongoLoads() {
+        return mongoLoads.get();
+    }
+
+    /**
+     * Fixed-size ring of serialized messages.
+     */
+    private static final class Ring {
+        private final String[] entries;
+        private int next;
+        private int size;
+        private long bytes;
+
+        Ring(int capacity) {
+            entries = new String[capacity];
+        }
+
+        /**
+         * @return the change in retained bytes
+         */
+        long add(String entry) {
+            long delta = weight(entry);
+            String evicted = entries[next];
+            if (evicted != null) delta -= weight(evicted);
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+            if (size < entries.length) size++;
+            bytes += delta;
+            return delta;
+        }
+
+        List<String> snapshot() {
+            List<String> out = new ArrayList<>(size);
+            int start = (next - size + entries.length) % entries.length;
+            for (int i = 0; i < size; i++) {
+                out.add(entries[(start + i) % entries.length]);
+            }
+            return out;
+        }
+
+        private static long weight(String entry) {
+            return ENTRY_OVERHEAD + entry.length() * 2L;
+        }
+    }
+}
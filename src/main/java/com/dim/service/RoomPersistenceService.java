@@ -1,21 +1,83 @@
 package com.dim.service;
 
+import com.dim.config.RoomMembershipConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.bson.Document;
+import org.jboss.logging.Logger;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import java.time.Instant;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Room documents and their members.
+ *
+ * Member changes are buffered and written with one bulkWrite per flush interval. Only the last
+ * change per (room, member) is kept, so a join/leave pair collapses to a single idempotent
+ * $addToSet or $pull. Reads through this service see buffered changes. When a flush fails as a
+ * whole its changes go back to the buffer, behind any newer change of the same member.
+ */
 @ApplicationScoped
 public class RoomPersistenceService {
 
+    private static final Logger LOG = Logger.getLogger(RoomPersistenceService.class);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
     @Inject
     MongoClient mongoClient;
 
+    @Inject
+    RoomMembershipConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    // roomId -> userId -> true (add) / false (remove); inner maps are only written inside pending.compute
+    private final Map<String, Map<String, Boolean>> pending = new ConcurrentHashMap<>();
+    // changes taken by the running flush, still visible to reads until written
+    private final Map<String, Map<String, Boolean>> flushing = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    private MongoWriteMeter writeMeter;
+
+    @PostConstruct
+    void init() {
+        writeMeter = new MongoWriteMeter(registry, "rooms", "bulkWrite");
+        Gauge.builder("scigal.rooms.pending", this, RoomPersistenceService::getPendingRooms)
+            .description("Rooms with membership changes waiting for the next flush")
+            .register(registry);
+        flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("scigal-room-members").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flush, config.flushIntervalMs(), config.flushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(config.flushIntervalMs() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
     private MongoCollection<Document> getCollection() {
         MongoDatabase db = mongoClient.getDatabase("scigal");
         return db.getCollection("rooms");
@@ -31,26 +93,111 @@ public class RoomPersistenceService {
     }
 
     public void addMember(String roomId, String userId) {
-        getCollection().updateOne(
-            new Document("roomId", roomId),
-            new Document("$addToSet", new Document("members", userId))
-        );
+        record(roomId, userId, true);
     }
 
     public void removeMember(String roomId, String userId) {
-        getCollection().updateOne(
-            new Document("roomId", roomId),
-            new Document("$pull", new Document("members", userId))
-        );
+        record(roomId, userId, false);
+    }
+
+    private void record(String roomId, String userId, boolean add) {
+        pending.compute(roomId, (r, changes) -> {
+            if (changes == null) changes = new ConcurrentHashMap<>();
+            changes.put(userId, add);
+            return changes;
+        });
+    }
+
+    synchronized void flush() {
+        List<WriteModel<Document>> models = new ArrayList<>();
+        for (String roomId : pending.keySet()) {
+            Map<String, Boolean> changes = pending.get(roomId);
+            if (changes == null) continue;
+            // in flushing before it leaves pending, so reads never miss it; changes recorded until the
+            // remove land in this same map
+            flushing.put(roomId, changes);
+            pending.remove(roomId);
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            changes.forEach((userId, add) -> (add ? added : removed).add(userId));
+            Document filter = new Document("roomId", roomId);
+            // $addToSet and $pull cannot target the same field in one update
+            if (!added.isEmpty()) {
+                models.add(new UpdateOneModel<>(filter,
+                    new Document("$addToSet", new Document("members", new Document("$each", added)))));
+            }
+            if (!removed.isEmpty()) {
+                models.add(new UpdateOneModel<>(filter,
+                    new Document("$pull", new Document("members", new Document("$in", removed)))));
+            }
+        }
+        if (models.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            getCollection().bulkWrite(models, UNORDERED);
+        } catch (MongoBulkWriteException e) {
+            writeMeter.failed(e.getWriteErrors().size());
+            LOG.warnf("room membership flush partially failed: %d/%d updates rejected", e.getWriteErrors().size(), models.size());
+        } catch (Exception e) {
+            writeMeter.failed(models.size());
+            LOG.warnf(e, "room membership flush failed (%d updates), retrying at the next flush", models.size());
+            // rejected updates (partial failure above) would fail again: only a failed write is retried
+            flushing.forEach(this::requeue);
+        } finally {
+            writeMeter.record(start);
+            flushing.clear();
+        }
+    }
+
+    private void requeue(String roomId, Map<String, Boolean> failed) {
+        pending.compute(roomId, (r, changes) -> {
+            if (changes == null) changes = new ConcurrentHashMap<>();
+            failed.forEach(changes::putIfAbsent);
+            return changes;
+        });
     }
 
     public Document getRoom(String roomId) {
-        return getCollection().find(new Document("roomId", roomId)).first();
+        Document room = getCollection().find(new Document("roomId", roomId)).first();
+        if (room == null) return null;
+        List<String> members = new ArrayList<>(room.getList("members", String.class, List.of()));
+        applyPending(members, flushing.get(roomId));
+        applyPending(members, pending.get(roomId));
+        return room.append("members", members);
     }
 
     public List<Document> getRoomsForUser(String userId) {
         List<Document> rooms = new ArrayList<>();
         getCollection().find(new Document("members", userId)).into(rooms);
+        // buffered changes for this user, latest first
+        Map<String, Boolean> changes = new HashMap<>();
+        flushing.forEach((roomId, c) -> { Boolean add = c.get(userId); if (add != null) changes.put(roomId, add); });
+        pending.forEach((roomId, c) -> { Boolean add = c.get(userId); if (add != null) changes.put(roomId, add); });
+        if (changes.isEmpty()) return rooms;
+        rooms.removeIf(room -> Boolean.FALSE.equals(changes.get(room.getString("roomId"))));
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            if (!change.getValue()) continue;
+            boolean present = rooms.stream().anyMatch(room -> change.getKey().equals(room.getString("roomId")));
+            if (!present) {
+                Document room = getRoom(change.getKey());
+                if (room != null) rooms.add(room);
+            }
+        }
         return rooms;
     }
+
+    private static void applyPending(List<String> members, Map<String, Boolean> changes) {
+        if (changes == null) return;
+        changes.forEach((userId, add) -> {
+            if (add) {
+                if (!members.contains(userId)) members.add(userId);
+            } else {
+                members.remove(userId);
+            }
+        });
+    }
+
+    public int getPendingRooms() {
+        return pending.size();
+    }
 }
@@ -1,11 +1,19 @@
 package com.dim.service;
 
-import io.vertx.core.Vertx;
+import com.dim.config.PresenceConfig;
+import com.dim.ws.ClusterBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.redis.client.Command;
 import io.vertx.redis.client.Redis;
 import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -13,28 +21,54 @@ import java.util.function.Consumer;
 public class SessionService {
 
     @Inject
-    Vertx vertx;
+    MeterRegistry registry;
 
+    // default client of quarkus-redis-client (quarkus.redis.hosts)
+    @Inject
+    Redis client;
+
+    @Inject
+    PresenceConfig presenceConfig;
+
+    // instance id: member of the presence sets of the users connected here
+    @Inject
+    ClusterBus bus;
+
+    private static final String OWNER_PREFIX = "scigal:session:";
+    // a sorted set: not the 'presence:' string keys of earlier versions, which may still be live
+    private static final String PRESENCE_PREFIX = "presence:z:";
+    // commands per heartbeat batch (four per user for presence)
+    private static final int REFRESH_BATCH = 512;
+
+    // pooled: commands and batches borrow a connection each, so a dropped one is simply replaced
     private RedisAPI redis;
+    private RedisCommandMeter setexMeter;
+    private RedisCommandMeter getMeter;
+    private RedisCommandMeter delMeter;
+    private RedisCommandMeter zaddMeter;
+    private RedisCommandMeter zremMeter;
+    private RedisCommandMeter expireMeter;
 
     @PostConstruct
     void init() {
-        Redis.createClient(vertx, "redis://localhost:6379").connect(ar -> {
-            if (ar.succeeded()) {
-                redis = RedisAPI.api(ar.result());
-            }
-        });
+        setexMeter = new RedisCommandMeter(registry, "setex");
+        getMeter = new RedisCommandMeter(registry, "get");
+        delMeter = new RedisCommandMeter(registry, "del");
+        zaddMeter = new RedisCommandMeter(registry, "zadd");
+        zremMeter = new RedisCommandMeter(registry, "zrem");
+        expireMeter = new RedisCommandMeter(registry, "expire");
+        redis = RedisAPI.api(client);
     }
 
     public void saveSession(String sessionId, String userId, int ttlSeconds) {
         if (redis != null) {
-            redis.setex("session:" + sessionId, String.valueOf(ttlSeconds), userId);
+            setexMeter.observe(System.nanoTime(), redis.setex("session:" + sessionId, String.valueOf(ttlSeconds), userId));
         }
     }
 
     public void getSession(String sessionId, Consumer<String> callback) {
         if (redis != null) {
-            redis.get("session:" + sessionId).onSuccess(response -> {
+            getMeter.observe(System.nanoTime(), redis.get("session:" + sessionId)).onSuccess(response -> {
                 callback.accept(response != null ? response.toString() : null);
             });
         }
@@ -42,20 +76,124 @@ public class SessionService {
 
     public void deleteSession(String sessionId) {
         if (redis != null) {
-            redis.del(List.of("session:" + sessionId));
+            delMeter.observe(System.nanoTime(), redis.del(List.of("session:" + sessionId)));
         }
     }
 
+    /**
+     * Mark a user online on this instance, kept alive by {@link #refreshPresence}. Redis is the
+     * authoritative presence state; MongoDB only gets the coalesced status (see UserProfileService).
+     *
+     * 'presence:z:{userId}' is a sorted set of the instances the user is connected to, scored by the
+     * expiry (epoch ms) of each one's last heartbeat: a crashed instance's entry expires on its own,
+     * and the key itself once no instance renews it.
+     */
     public void setUserOnline(String userId) {
         if (redis != null) {
-            redis.set(List.of("presence:" + userId, "online"));
-            redis.expire(List.of("presence:" + userId, "300"));
+            zaddMeter.observe(System.nanoTime(), client.batch(presence(userId, new ArrayList<>(4), expiry(),
+                String.valueOf(ttlMs()))));
         }
     }
 
-    public void setUserOffline(String userId) {
+    /**
+     * Remove this instance from a user's presence.
+     *
+     * @return true when no other instance has the user online anymore
+     */
+    public Future<Boolean> setUserOffline(String userId) {
+        if (redis == null) return Future.failedFuture("redis not connected");
+        String key = PRESENCE_PREFIX + userId;
+        // the set is deleted by Redis once empty
+        List<Request> batch = List.of(
+            Request.cmd(Command.ZREM).arg(key).arg(bus.getInstanceId()),
+            Request.cmd(Command.ZREMRANGEBYSCORE).arg(key).arg("-inf").arg(System.currentTimeMillis()),
+            Request.cmd(Command.ZCARD).arg(key));
+        return zremMeter.observe(System.nanoTime(), client.batch(batch))
+            .map(replies -> {
+                Response card = replies.get(2);
+                return card == null || card.toLong() == 0;
+            });
+    }
+
+    /**
+     * Presence heartbeat of the users connected here, as pipelined batches of ZADD + PEXPIRE
+     * transactions.
+     */
+    public void refreshPresence(Collection<String> userIds) {
+        if (userIds.isEmpty()) return;
+        String expiry = expiry();
+        String ttl = String.valueOf(ttlMs());
+        List<Request> batch = new ArrayList<>(Math.min(REFRESH_BATCH, 4 * userIds.size()));
+        for (String userId : userIds) {
+            presence(userId, batch, expiry, ttl);
+            if (batch.size() >= REFRESH_BATCH) {
+                zaddMeter.observe(System.nanoTime(), client.batch(batch));
+                batch = new ArrayList<>(REFRESH_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            zaddMeter.observe(System.nanoTime(), client.batch(batch));
+        }
+    }
+
+    private List<Request> presence(String userId, List<Request> batch, String expiry, String ttl) {
+        String key = PRESENCE_PREFIX + userId;
+        // MULTI/EXEC: a pipeline alone could apply the ZADD without the PEXPIRE, leaving a set that never expires
+        batch.add(Request.cmd(Command.MULTI));
+        batch.add(Request.cmd(Command.ZADD).arg(key).arg(expiry).arg(bus.getInstanceId()));
+        batch.add(Request.cmd(Command.PEXPIRE).arg(key).arg(ttl));
+        batch.add(Request.cmd(Command.EXEC));
+        return batch;
+    }
+
+    private long ttlMs() {
+        return presenceConfig.ttlSeconds() * 1000L;
+    }
+
+    private String expiry() {
+        return String.valueOf(System.currentTimeMillis() + ttlMs());
+    }
+
+    /**
+     * Record the instance owning a Socket.IO session, for point-to-point routing across the cluster.
+     */
+    public void registerOwner(String sessionId, String instanceId, int ttlSeconds) {
+        if (redis != null) {
+            setexMeter.observe(System.nanoTime(), redis.setex(OWNER_PREFIX + sessionId, String.valueOf(ttlSeconds), instanceId));
+        }
+    }
+
+    /**
+     * Extend the TTL of owned sessions, as pipelined EXPIRE batches.
+     */
+    public void refreshOwners(Collection<String> sessionIds, int ttlSeconds) {
+        if (sessionIds.isEmpty()) return;
+        String ttl = String.valueOf(ttlSeconds);
+        List<Request> batch = new ArrayList<>(Math.min(REFRESH_BATCH, sessionIds.size()));
+        for (String sessionId : sessionIds) {
+            batch.add(Request.cmd(Command.EXPIRE).arg(OWNER_PREFIX + sessionId).arg(ttl));
+            if (batch.size() == REFRESH_BATCH) {
+                expireMeter.observe(System.nanoTime(), client.batch(batch));
+                batch = new ArrayList<>(REFRESH_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            expireMeter.observe(System.nanoTime(), client.batch(batch));
+        }
+    }
+
+    /**
+     * Instance owning a session, null when unknown or expired.
+     */
+    public Future<String> getOwner(String sessionId) {
+        if (redis == null) return Future.failedFuture("redis not connected");
+        return getMeter.observe(System.nanoTime(), redis.get(OWNER_PREFIX + sessionId))
+            .map(response -> response != null ? response.toString() : null);
+    }
+
+    public void deleteOwner(String sessionId) {
         if (redis != null) {
-            redis.del(List.of("presence:" + userId));
+            delMeter.observe(System.nanoTime(), redis.del(List.of(OWNER_PREFIX + sessionId)));
         }
     }
 }
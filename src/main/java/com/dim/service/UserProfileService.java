@@ -1,19 +1,143 @@
 package com.dim.service;
 
+import com.dim.config.PresenceConfig;
+import com.dim.config.ProfileCacheConfig;
+import com.dim.model.ProfileInvalidation;
+import com.dim.model.UserProfile;
+import com.dim.ws.ClusterBus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.bson.Document;
+import org.jboss.logging.Logger;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * User profiles (collection profiles), read through a bounded in-process near-cache.
+ *
+ * Profiles are cached LRU under a memory budget, unknown users included. Every write invalidates
+ * the profile here and, over the {@link ClusterBus}, on the other instances; entries also expire,
+ * which bounds staleness if an invalidation is lost.
+ *
+ * Status changes are write-behind: only the last status and lastSeen of each user within a flush
+ * interval are written, by one periodic bulkWrite. Live presence is read from Redis, not from here.
+ */
 @ApplicationScoped
 public class UserProfileService {
 
+    private static final Logger LOG = Logger.getLogger(UserProfileService.class);
+    // per-entry overhead estimate (map entry, Document and its field map)
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int STRIPES = 64;
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    // status updates per bulkWrite, and users per invalidation event
+    private static final int FLUSH_BATCH = 1000;
+
     @Inject
     MongoClient mongoClient;
 
+    @Inject
+    ProfileCacheConfig cacheConfig;
+
+    @Inject
+    PresenceConfig presenceConfig;
+
+    @Inject
+    ClusterBus bus;
+
+    @Inject
+    MeterRegistry registry;
+
+    // access-ordered: iteration starts at the least recently used profile (guarded by this)
+    private final LinkedHashMap<String, Cached> cache = new LinkedHashMap<>(1024, 0.75f, true);
+    private long usedBytes;
+    // bumped by each invalidation of the users of a stripe: a load started before it does not cache its result
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicBoolean indexed = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // userId -> last status not yet written
+    private final Map<String, PendingStatus> pendingStatus = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    private MongoWriteMeter writeMeter;
+
+    private record PendingStatus(String status, Date lastSeen) {}
+
+    /**
+     * @param profile null for a user without a profile
+     */
+    private record Cached(Document profile, int bytes, long expiresAt) {}
+
+    @PostConstruct
+    void init() {
+        FunctionCounter.builder("scigal.profile.cache.requests", hits, LongAdder::sum)
+            .description("Profile lookups by near-cache result")
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("scigal.profile.cache.requests", misses, LongAdder::sum)
+            .description("Profile lookups by near-cache result")
+            .tag("result", "miss")
+            .register(registry);
+        Gauge.builder("scigal.profile.cache.hit.ratio", this, UserProfileService::getHitRatio)
+            .description("Share of profile lookups served by the near-cache since startup")
+            .register(registry);
+        Gauge.builder("scigal.profile.cache.bytes", this, UserProfileService::getUsedBytes)
+            .description("Estimated memory held by the profile near-cache")
+            .register(registry);
+        Gauge.builder("scigal.profiles.status.pending", pendingStatus, Map::size)
+            .description("Users with a status change waiting for the next flush")
+            .register(registry);
+        writeMeter = new MongoWriteMeter(registry, "profiles", "bulkWrite");
+        flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("scigal-profile-status").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flushStatus, presenceConfig.persistIntervalMs(),
+            presenceConfig.persistIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(presenceConfig.persistIntervalMs() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushStatus();
+    }
+
     private MongoCollection<Document> getCollection() {
         MongoDatabase db = mongoClient.getDatabase("scigal");
         return db.getCollection("profiles");
@@ -25,19 +149,237 @@ public class UserProfileService {
             .append("displayName", displayName)
             .append("avatarUrl", avatarUrl)
             .append("status", "online")
-            .append("lastSeen", Instant.now().toString());
+            .append("lastSeen", new Date());
         getCollection().insertOne(doc);
+        invalidate(List.of(odutilisateur));
     }
 
+    /**
+     * The returned document is shared with the cache and must not be modified.
+     */
     public Document getProfile(String odutilisateur) {
-        return getCollection().find(new Document("userId", odutilisateur)).first();
+        return getProfiles(List.of(odutilisateur)).get(odutilisateur);
     }
 
+    /**
+     * Profiles of several users at once, by user id; users without a profile are left out.
+     * Cache misses are read with a single $in query. The returned documents are shared with the
+     * cache and must not be modified.
+     */
+    public Map<String, Document> getProfiles(Collection<String> userIds) {
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        Map<String, Document> found = new HashMap<>(ids.size() * 2);
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        if (cacheConfig.enabled()) {
+            synchronized (this) {
+                for (String id : ids) {
+                    Cached cached = cache.get(id);
+                    if (cached != null && cached.expiresAt() > now) {
+                        if (cached.profile() != null) found.put(id, cached.profile());
+                    } else {
+                        missing.add(id);
+                    }
+                }
+            }
+            hits.add(ids.size() - missing.size());
+            misses.add(missing.size());
+        } else {
+            missing.addAll(ids);
+        }
+        if (missing.isEmpty()) return found;
+
+        long[] before = new long[missing.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = generations.get(stripe(missing.get(i)));
+        }
+        Map<String, Document> loaded = load(missing);
+        found.putAll(loaded);
+        if (cacheConfig.enabled()) {
+            long expiresAt = System.currentTimeMillis() + cacheConfig.ttlMs();
+            synchronized (this) {
+                for (int i = 0; i < before.length; i++) {
+                    String id = missing.get(i);
+                    // invalidated while loading: what we read may already be stale
+                    if (generations.get(stripe(id)) != before[i]) continue;
+                    Document profile = loaded.get(id);
+                    Cached cached = new Cached(profile, weigh(id, profile), expiresAt);
+                    Cached previous = cache.put(id, cached);
+                    usedBytes += cached.bytes() - (previous != null ? previous.bytes() : 0);
+                }
+                evict();
+            }
+        }
+        return found;
+    }
+
+    private Map<String, Document> load(List<String> userIds) {
+        if (indexed.compareAndSet(false, true)) {
+            try {
+                getCollection().createIndex(Indexes.ascending("userId"));
+            } catch (Exception e) {
+                indexed.set(false);
+                LOG.debug("unable to create the userId index on profiles", e);
+            }
+        }
+        Map<String, Document> loaded = new HashMap<>(userIds.size() * 2);
+        for (Document doc : getCollection().find(Filters.in("userId", userIds))) {
+            // several documents per user: the first one wins, as with find().first()
+            loaded.putIfAbsent(doc.getString("userId"), doc);
+        }
+        return loaded;
+    }
+
+    /**
+     * Record a status change; never touches MongoDB on the calling thread. A connect/disconnect
+     * burst of the same user within a flush interval ends up as a single update.
+     */
     public void updateStatus(String odutilisateur, String status) {
-        getCollection().updateOne(
-            new Document("userId", odutilisateur),
-            new Document("$set", new Document("status", status)
-                .append("lastSeen", Instant.now().toString()))
-        );
+        pendingStatus.put(odutilisateur, new PendingStatus(status, new Date()));
+    }
+
+    /**
+     * Runs on the flusher thread only (and once more at shutdown), never under the cache lock.
+     */
+    void flushStatus() {
+        List<String> userIds = new ArrayList<>(Math.min(FLUSH_BATCH, pendingStatus.size()));
+        List<PendingStatus> changes = new ArrayList<>(userIds.size());
+        List<WriteModel<Document>> models = new ArrayList<>(userIds.size());
+        // a snapshot: updates put back by a failed batch wait for the next flush
+        for (String userId : List.copyOf(pendingStatus.keySet())) {
+            PendingStatus change = pendingStatus.remove(userId);
+            if (change == null) continue;
+            userIds.add(userId);
+            changes.add(change);
+            models.add(new UpdateOneModel<>(Filters.eq("userId", userId),
+                Updates.combine(Updates.set("status", change.status()), Updates.set("lastSeen", change.lastSeen()))));
+            if (models.size() == FLUSH_BATCH) {
+                writeStatus(userIds, changes, models);
+                userIds = new ArrayList<>(FLUSH_BATCH);
+                changes = new ArrayList<>(FLUSH_BATCH);
+                models = new ArrayList<>(FLUSH_BATCH);
+            }
+        }
+        if (!models.isEmpty()) writeStatus(userIds, changes, models);
+    }
+
+    private void writeStatus(List<String> userIds, List<PendingStatus> changes, List<WriteModel<Document>> models) {
+        long start = System.nanoTime();
+        try {
+            getCollection().bulkWrite(models, UNORDERED);
+        } catch (MongoBulkWriteException e) {
+            writeMeter.failed(e.getWriteErrors().size());
+            LOG.warnf("profile status flush partially failed: %d/%d updates rejected", e.getWriteErrors().size(), models.size());
+        } catch (Exception e) {
+            writeMeter.failed(models.size());
+            LOG.warnf(e, "profile status flush failed (%d updates), retrying at the next flush", models.size());
+            // back in the buffer unless a newer status arrived meanwhile
+            for (int i = 0; i < userIds.size(); i++) {
+                pendingStatus.putIfAbsent(userIds.get(i), changes.get(i));
+            }
+            return;
+        } finally {
+            writeMeter.record(start);
+        }
+        invalidate(userIds);
+    }
+
+    /**
+     * Profiles of several users, in the given order; users without a profile are left out.
+     */
+    public List<UserProfile> getUserProfiles(Collection<String> userIds) {
+        Map<String, Document> profiles = getProfiles(userIds);
+        List<UserProfile> out = new ArrayList<>(profiles.size());
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            Document doc = profiles.get(userId);
+            if (doc != null) out.add(toProfile(userId, doc));
+        }
+        return out;
+    }
+
+    static UserProfile toProfile(String userId, Document doc) {
+        UserProfile profile = new UserProfile();
+        Object id = doc.get("_id");
+        profile.setId(id != null ? id.toString() : null);
+        profile.setUserId(userId);
+        profile.setDisplayName(doc.getString("displayName"));
+        profile.setAvatarUrl(doc.getString("avatarUrl"));
+        profile.setStatus(doc.getString("status"));
+        profile.setLastSeen(lastSeenOf(doc.get("lastSeen")));
+        return profile;
+    }
+
+    /**
+     * lastSeen is a BSON date; profiles written before that hold an ISO string.
+     */
+    static Instant lastSeenOf(Object lastSeen) {
+        if (lastSeen instanceof Date date) return date.toInstant();
+        if (lastSeen instanceof String iso) {
+            try {
+                return Instant.parse(iso);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drop profiles here and, with one event, on the other instances (which only cache them when
+     * the cache is enabled, as this one).
+     */
+    private void invalidate(List<String> userIds) {
+        if (!cacheConfig.enabled()) return;
+        userIds.forEach(this::evict);
+        try {
+            bus.publish(ProfileInvalidation.of(userIds, bus.getInstanceId()));
+        } catch (Exception e) {
+            LOG.debug("bus publish for profile invalidation failed", e);
+        }
+    }
+
+    /**
+     * Drop a cached profile, e.g. on an invalidation from another instance.
+     */
+    public void evict(String userId) {
+        if (userId == null) return;
+        generations.incrementAndGet(stripe(userId));
+        synchronized (this) {
+            Cached cached = cache.remove(userId);
+            if (cached != null) usedBytes -= cached.bytes();
+        }
+    }
+
+    private void evict() {
+        Iterator<Cached> it = cache.values().iterator();
+        while (usedBytes > cacheConfig.memoryBudgetBytes() && it.hasNext()) {
+            usedBytes -= it.next().bytes();
+            it.remove();
+        }
+    }
+
+    private static int stripe(String userId) {
+        return userId.hashCode() & (STRIPES - 1);
+    }
+
+    private static int weigh(String userId, Document profile) {
+        int bytes = ENTRY_OVERHEAD + 2 * userId.length();
+        if (profile != null) {
+            for (Map.Entry<String, Object> field : profile.entrySet()) {
+                bytes += 48 + 2 * field.getKey().length();
+                if (field.getValue() instanceof String value) bytes += 2 * value.length();
+            }
+        }
+        return bytes;
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
     }
 }
@@ -1,12 +1,31 @@
 package com.dim.service;
 
 import com.dim.entity.User;
+import com.dim.model.IngestResult;
+import com.dim.model.UserPage;
+import com.dim.model.UserSummary;
 import com.dim.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.jboss.logging.Logger;
@@ -16,10 +35,79 @@ public class UserService {
     @Inject
     UserRepository userRepository;
 
+    @Inject
+    ObjectMapper mapper;
+
+    // hibernate.jdbc.batch_size: inserts are flushed (and the session cleared) every that many users
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int batchSize;
+
     private static final Logger LOG = Logger.getLogger(UserService.class);
+    // users per page when streaming the whole table
+    private static final int STREAM_PAGE = 500;
+    // users per transaction during an import
+    private static final int IMPORT_CHUNK = 1000;
+    // must match the @SequenceGenerator of User
+    private static final String USER_SEQUENCE = "app_user_seq";
+    private static final int USER_ID_ALLOCATION = 50;
+
+    /**
+     * app_user ids used to come from an IDENTITY column: a sequence created next to existing rows
+     * starts at 1 and would hand out ids already taken. Moves it past the highest id when needed.
+     * Runs in its own transaction: a failure (missing sequence, privileges) is only a warning.
+     */
+    void alignUserSequence(@Observes StartupEvent ev) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                EntityManager em = userRepository.getEntityManager();
+                Number max = (Number) em.createQuery("select max(u.id) from User u").getSingleResult();
+                if (max == null) return;
+                Dialect dialect = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect();
+                Number next = (Number) em.createNativeQuery(
+                    dialect.getSequenceSupport().getSequenceNextValString(USER_SEQUENCE)).getSingleResult();
+                // pooled optimizer: the value read is the upper end of the next block of ids
+                if (next.longValue() - USER_ID_ALLOCATION < max.longValue()) {
+                    long restart = max.longValue() + USER_ID_ALLOCATION + 1;
+                    em.createNativeQuery("ALTER SEQUENCE " + USER_SEQUENCE + " RESTART WITH " + restart).executeUpdate();
+                    LOG.infof("Séquence %s repositionnée à %d (id max: %d)", USER_SEQUENCE, restart, max.longValue());
+                }
+            });
+        } catch (Exception e) {
+            LOG.warnf(e, "Impossible de vérifier la séquence %s", USER_SEQUENCE);
+        }
+    }
 
-    public List<User> findAll() {
-        return userRepository.listAll();
+    /**
+     * Up to {@code limit} users with an id above {@code afterId}, in id order: an index range on the
+     * primary key whatever the page, unlike an offset.
+     */
+    public UserPage page(long afterId, int limit) {
+        List<UserSummary> users = userRepository.find("id > ?1", Sort.by("id"), afterId)
+            .project(UserSummary.class)
+            .page(0, limit)
+            .list();
+        Long next = users.size() == limit ? users.get(users.size() - 1).id() : null;
+        return new UserPage(users, next);
+    }
+
+    /**
+     * Write every user as one JSON array, page by page: only one page is ever held in memory.
+     */
+    public void writeAll(OutputStream out) throws IOException {
+        try (JsonGenerator json = mapper.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            Long after = 0L;
+            while (after != null) {
+                UserPage page = page(after, STREAM_PAGE);
+                for (UserSummary user : page.users()) {
+                    json.writeObject(user);
+                }
+                json.flush();
+                after = page.next();
+            }
+            json.writeEndArray();
+        }
     }
 
     @Transactional
@@ -40,6 +128,67 @@ public class UserService {
 
 
     }
-}
 
+    /**
+     * Import a JSON array of users, parsed as it arrives. Users are inserted in JDBC batches of
+     * {@code batchSize}, one transaction per {@value #IMPORT_CHUNK} users: a failed chunk is
+     * rejected as a whole, the others are kept. Malformed JSON ends the import: the users read
+     * before it are kept and the result says where it stopped.
+     */
+    public IngestResult importUsers(InputStream body) throws IOException {
+        IngestResult result = new IngestResult();
+        List<User> chunk = new ArrayList<>(IMPORT_CHUNK);
+        long[] records = new long[IMPORT_CHUNK];
+        long record = 0;
+        try (MappingIterator<User> users = mapper.readerFor(User.class).readValues(body)) {
+            while (true) {
+                User user;
+                try {
+                    if (!users.hasNextValue()) break;
+                    user = users.nextValue();
+                } catch (JsonProcessingException e) {
+                    result.reject(record + 1, "invalid JSON");
+                    LOG.warnf("Import utilisateurs interrompu à l'enregistrement %d : %s", record + 1, e.getOriginalMessage());
+                    break;
+                }
+                record++;
+                if (user.name == null || user.name.isBlank() || user.email == null || user.email.isBlank()) {
+                    result.reject(record, "name and email are required");
+                    continue;
+                }
+                // ids come from the sequence
+                user.id = 0;
+                records[chunk.size()] = record;
+                chunk.add(user);
+                if (chunk.size() == IMPORT_CHUNK) {
+                    persistChunk(chunk, records, result);
+                    chunk.clear();
+                }
+            }
+        }
+        persistChunk(chunk, records, result);
+        LOG.infof("Import utilisateurs : %d ajoutés, %d rejetés", result.getAccepted(), result.getRejected());
+        return result;
+    }
 
+    private void persistChunk(List<User> chunk, long[] records, IngestResult result) {
+        if (chunk.isEmpty()) return;
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    userRepository.persist(chunk.get(i));
+                    if ((i + 1) % batchSize == 0) {
+                        userRepository.flush();
+                        userRepository.getEntityManager().clear();
+                    }
+                }
+            });
+            chunk.forEach(user -> result.accept());
+        } catch (Exception e) {
+            LOG.warnf(e, "Import de %d utilisateurs échoué", chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                result.reject(records[i], "insert failed: " + e.getMessage());
+            }
+        }
+    }
+}
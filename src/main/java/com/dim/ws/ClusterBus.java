@@ -0,0 +1,48 @@
+package com.dim.ws;
+
+import com.dim.model.Message;
+
+/**
+ * Relays socket events between the instances of the cluster. Events received from other instances
+ * are handed to {@link SocketIOServerWrapper#onPubSub}.
+ *
+ * Implementations: {@link RedisPubSubBus} (PUBLISH/SUBSCRIBE), {@link RedisStreamsBus} (Redis Streams,
+ * replay after a disconnection) and {@link InMemoryBus} (single node, or several nodes in one JVM).
+ * The one in use is chosen by {@code scigal.pubsub.mode}, see {@link ClusterBusProducer}.
+ */
+public interface ClusterBus {
+
+    /**
+     * Identifies this instance as the origin of the events it publishes.
+     */
+    String getInstanceId();
+
+    /**
+     * Publish an event to the other instances. The envelope must already carry this instance as origin
+     * (see {@link EnvelopeCodec#fromClient}); its cached wire form is sent as is. Does nothing, not even
+     * serialize the event, while no other instance is live, unless the bus keeps events for instances
+     * that come back.
+     */
+    void publish(Message msg);
+
+    /**
+     * Publish an event to one instance only (see {@link SessionRegistry}).
+     */
+    void publishTo(String instanceId, Message msg);
+
+    /**
+     * Register one more local member of a room.
+     */
+    void retainRoom(String room);
+
+    /**
+     * Unregister a local member of a room.
+     */
+    void releaseRoom(String room);
+
+    /**
+     * Whether other instances are currently live; while they are not, publishing is skipped unless
+     * the bus keeps events for instances that come back (streams).
+     */
+    boolean hasPeers();
+}
@@ -0,0 +1,37 @@
+package com.dim.ws;
+
+import com.dim.config.PubSubConfig;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import org.jboss.logging.Logger;
+
+/**
+ * Selects the {@link ClusterBus} implementation from {@code scigal.pubsub.mode}. Only the selected
+ * one is created, so MEMORY mode opens no Redis connection for the bus.
+ */
+@ApplicationScoped
+public class ClusterBusProducer {
+
+    private static final Logger LOG = Logger.getLogger(ClusterBusProducer.class);
+
+    @Produces
+    @ApplicationScoped
+    ClusterBus clusterBus(PubSubConfig config, Instance<RedisPubSubBus> pubSub, Instance<RedisStreamsBus> streams,
+                          Instance<InMemoryBus> memory) {
+        return switch (config.mode()) {
+            case PUBSUB -> pubSub.get();
+            case STREAMS -> streams.get();
+            case MEMORY -> memory.get();
+        };
+    }
+
+    /**
+     * The bus must be receiving before the first client joins a room.
+     */
+    void onStart(@Observes StartupEvent ev, PubSubConfig config, ClusterBus bus) {
+        LOG.infof("cluster bus: %s, instance %s", config.mode(), bus.getInstanceId());
+    }
+}
@@ -0,0 +1,100 @@
+package com.dim.ws;
+
+import com.dim.model.CallMessage;
+import com.dim.model.Message;
+import com.dim.model.ProfileInvalidation;
+import com.dim.model.SignalMessage;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Single-parse codec between socket/bus events and the typed {@link Message} envelopes.
+ * Each event is parsed once; its serialized forms are produced at most once and then shared.
+ *
+ * On the bus, a client event travels untouched in the 'body' field of an envelope carrying what
+ * the instances need: {type, origin, sentAt, room, target, body}. Internal events (profile
+ * invalidations, hellos) have no body and keep their fields at the top level.
+ */
+final class EnvelopeCodec {
+
+    private EnvelopeCodec() {}
+
+    /**
+     * Decode an event sent by a local socket client. Local recipients get the received text as is;
+     * the bus envelope adds the event type, the local origin and the send time (epoch ms, used for
+     * the bus receive lag).
+     */
+    static Message fromClient(String type, String data, String origin) {
+        JsonObject json = new JsonObject(data);
+        Message msg = decode(json, type);
+        msg.setClientWire(data);
+        if (msg.getPayload() == null) {
+            // payload-less messages are relayed as the whole event, as before
+            msg.setPayload(data);
+        }
+        JsonObject envelope = new JsonObject()
+            .put("type", type)
+            .put("origin", origin)
+            .put("sentAt", System.currentTimeMillis());
+        // routing fields, read without looking into the body
+        if (msg.getRoom() != null) envelope.put("room", msg.getRoom());
+        if (msg instanceof SignalMessage signal && signal.getTarget() != null) envelope.put("target", signal.getTarget());
+        msg.setEnvelope(envelope.put("body", json));
+        return msg;
+    }
+
+    /**
+     * Decode an event received from the Redis bus. Clients get its body, without the bus fields.
+     */
+    static Message fromBus(JsonObject json, Buffer raw) {
+        String type = json.getString("type", Message.TYPE);
+        JsonObject body = json.getJsonObject("body");
+        Message msg = decode(body != null ? body : json, type);
+        if (msg.getPayload() == null) {
+            msg.setPayload("");
+        }
+        msg.setEnvelope(json);
+        return msg;
+    }
+
+    private static Message decode(JsonObject json, String type) {
+        Message msg;
+        switch (type) {
+            case SignalMessage.TYPE:
+                SignalMessage signal = new SignalMessage();
+                signal.setTarget(json.getString("target"));
+                msg = signal;
+                break;
+            case CallMessage.TYPE:
+                CallMessage call = new CallMessage();
+                call.setCallId(json.getString("callId"));
+                call.setTo(json.getString("to"));
+                msg = call;
+                break;
+            case ProfileInvalidation.TYPE:
+                ProfileInvalidation invalidation = new ProfileInvalidation();
+                JsonArray userIds = json.getJsonArray("userIds", new JsonArray());
+                invalidation.setUserIds(userIds.stream().map(String::valueOf).toList());
+                msg = invalidation;
+                break;
+            default:
+                msg = new Message();
+                break;
+        }
+        msg.setRoom(json.getString("room"));
+        msg.setFrom(json.getString("from"));
+        msg.setPayload(payload(json));
+        msg.setBody(json);
+        return msg;
+    }
+
+    private static String payload(JsonObject json) {
+        Object payload = json.getValue("payload");
+        if (payload == null) payload = json.getValue("message");
+        if (payload == null) return null;
+        if (payload instanceof CharSequence) return payload.toString();
+        return Json.encode(payload);
+    }
+}
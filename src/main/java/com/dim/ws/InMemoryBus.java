@@ -0,0 +1,92 @@
+package com.dim.ws;
+
+import com.dim.model.Message;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-JVM bus, no Redis. Alone (the default), it is a single-node deployment: nothing is published,
+ * nothing is serialized. Several buses joined to the same {@link Hub} relay events to each other
+ * as the Redis buses would, each delivering on its own Vert.x context, which lets several servers
+ * run as a cluster inside one JVM.
+ */
+@ApplicationScoped
+@Typed(InMemoryBus.class)
+public class InMemoryBus implements ClusterBus {
+
+    @Inject
+    Vertx vertx;
+
+    // prefer forwarding bus events to the Socket.IO server wrapper
+    @Inject
+    SocketIOServerWrapper socketIOServerWrapper;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private Hub hub;
+    private Context context;
+
+    /**
+     * Buses relaying to each other.
+     */
+    public static final class Hub {
+        private final List<InMemoryBus> members = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Relay events with the other buses of {@code hub}.
+     */
+    public void join(Hub hub) {
+        this.context = vertx.getOrCreateContext();
+        this.hub = hub;
+        hub.members.add(this);
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public boolean hasPeers() {
+        return hub != null && hub.members.size() > 1;
+    }
+
+    @Override
+    public void publish(Message msg) {
+        if (hasPeers()) relay(msg, null);
+    }
+
+    @Override
+    public void publishTo(String targetInstanceId, Message msg) {
+        if (hasPeers()) relay(msg, targetInstanceId);
+    }
+
+    /**
+     * Each receiver decodes its own copy, as it would from Redis.
+     */
+    private void relay(Message msg, String targetInstanceId) {
+        Buffer raw = Buffer.buffer(msg.wire());
+        for (InMemoryBus peer : hub.members) {
+            if (peer == this || (targetInstanceId != null && !targetInstanceId.equals(peer.instanceId))) continue;
+            peer.context.runOnContext(v ->
+                peer.socketIOServerWrapper.onPubSub(EnvelopeCodec.fromBus(new JsonObject(raw), raw)));
+        }
+    }
+
+    @Override
+    public void retainRoom(String room) {
+    }
+
+    @Override
+    public void releaseRoom(String room) {
+    }
+}
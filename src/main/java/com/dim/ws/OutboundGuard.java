@@ -0,0 +1,316 @@
+package com.dim.ws;
+
+import com.dim.config.OutboundConfig.SlowConsumerPolicy;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-channel outbound budget, installed right above the websocket frame encoder.
+ *
+ * While the channel is writable, frames go straight through. Once Netty's write buffer crosses the
+ * high water mark, Socket.IO frames are parked here (up to the configured budget) instead of piling
+ * up in the channel, and written back in order when the channel drains below the low water mark.
+ * Over budget, the slow-consumer policy applies. A binary event and its attachment frames are kept,
+ * dropped or written as one unit. Control frames and polling responses are never held.
+ *
+ * All state is confined to the channel's event loop, except the counters read by the status snapshot.
+ */
+final class OutboundGuard extends ChannelDuplexHandler {
+
+    /** Websocket close code sent to disconnected slow consumers (private range 4000-4999). */
+    static final int SLOW_CONSUMER_CLOSE = 4008;
+    private static final long CLOSE_GRACE_MS = 1000;
+
+    private final SlowConsumerMonitor monitor;
+    private final ArrayDeque<Parked> parked = new ArrayDeque<>();
+    private long parkedBytes;
+    // binary frames still expected for the last binary event, and the parked unit they belong to
+    private int attachmentsLeft;
+    private Parked attachTo;
+    private boolean closing;
+    private ScheduledFuture<?> stallCheck;
+
+    volatile String sessionId;
+    volatile String userId;
+    volatile String remoteAddress;
+    volatile long unwritableSince;
+    volatile int pendingEvents;
+    volatile long pendingBytes;
+    volatile long dropped;
+    volatile long coalesced;
+
+    OutboundGuard(SlowConsumerMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        remoteAddress = String.valueOf(ctx.channel().remoteAddress());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (userId == null && msg instanceof HttpRequest request) {
+            List<String> user = new QueryStringDecoder(request.uri()).parameters().get("userId");
+            if (user != null && !user.isEmpty()) userId = user.get(0);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof WebSocketFrame frame) || msg instanceof CloseWebSocketFrame
+                || msg instanceof PingWebSocketFrame || msg instanceof PongWebSocketFrame) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (closing) {
+            discard(frame, promise);
+            return;
+        }
+        if (!(frame instanceof TextWebSocketFrame) && attachmentsLeft > 0) {
+            // attachment of the previous binary event: same fate as its text frame
+            attachmentsLeft--;
+            if (attachTo != null) {
+                attachTo.add(frame, promise);
+                parkedBytes += frame.content().readableBytes();
+                updateView();
+                if (attachmentsLeft == 0) {
+                    attachTo = null;
+                    if (ctx.channel().isWritable()) drain(ctx);
+                }
+            } else {
+                ctx.write(frame, promise);
+            }
+            return;
+        }
+        int event = -1;
+        if (frame instanceof TextWebSocketFrame) {
+            ByteBuf content = frame.content();
+            if (sessionId == null) captureSessionId(content);
+            attachmentsLeft = SocketPackets.attachments(content);
+            attachTo = null;
+            event = monitor.droppableEvent(content);
+        }
+        if (parked.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(frame, promise);
+            return;
+        }
+        park(ctx, frame, promise, event);
+    }
+
+    private void park(ChannelHandlerContext ctx, WebSocketFrame frame, ChannelPromise promise, int event) {
+        markSlow(ctx);
+        if (event >= 0 && monitor.policy() == SlowConsumerPolicy.COALESCE) {
+            // latest wins: an older parked event of the same type is superseded
+            Iterator<Parked> it = parked.iterator();
+            while (it.hasNext()) {
+                Parked old = it.next();
+                if (old.event == event && old != attachTo) {
+                    it.remove();
+                    parkedBytes -= old.bytes;
+                    old.discard();
+                    coalesced++;
+                    monitor.onCoalesced();
+                    break;
+                }
+            }
+        }
+        Parked unit = new Parked(event);
+        unit.add(frame, promise);
+        parked.addLast(unit);
+        parkedBytes += unit.bytes;
+        if (attachmentsLeft > 0) attachTo = unit;
+        enforceBudget(ctx);
+        updateView();
+        if (!closing && attachTo == null && ctx.channel().isWritable()) drain(ctx);
+    }
+
+    private void enforceBudget(ChannelHandlerContext ctx) {
+        while (parked.size() > monitor.maxPendingEvents() || parkedBytes > monitor.maxPendingBytes()) {
+            if (monitor.policy() == SlowConsumerPolicy.DISCONNECT) {
+                disconnect(ctx, SlowConsumerMonitor.REASON_BUDGET);
+                return;
+            }
+            Parked victim = null;
+            for (Parked p : parked) {
+                if (p.event >= 0 && p != attachTo) {
+                    victim = p;
+                    break;
+                }
+            }
+            if (victim == null) {
+                // only critical events left: they cannot be dropped
+                disconnect(ctx, SlowConsumerMonitor.REASON_BUDGET);
+                return;
+            }
+            parked.remove(victim);
+            parkedBytes -= victim.bytes;
+            victim.discard();
+            dropped++;
+            monitor.onDropped();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+        } else {
+            markSlow(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        boolean wrote = false;
+        while (!parked.isEmpty() && ctx.channel().isWritable()) {
+            Parked unit = parked.peekFirst();
+            if (unit == attachTo) break; // attachments still to come
+            parked.pollFirst();
+            parkedBytes -= unit.bytes;
+            unit.writeTo(ctx);
+            wrote = true;
+        }
+        if (wrote) ctx.flush();
+        updateView();
+        if (parked.isEmpty() && ctx.channel().isWritable()) {
+            recovered();
+        }
+    }
+
+    private void markSlow(ChannelHandlerContext ctx) {
+        if (unwritableSince != 0 || closing) return;
+        unwritableSince = System.currentTimeMillis();
+        monitor.slowStarted(this);
+        long maxStall = monitor.maxStallMs();
+        if (maxStall > 0) {
+            stallCheck = ctx.executor().schedule(() -> {
+                if (unwritableSince != 0 && !ctx.channel().isWritable()) {
+                    disconnect(ctx, SlowConsumerMonitor.REASON_STALLED);
+                }
+            }, maxStall, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recovered() {
+        if (unwritableSince == 0) return;
+        unwritableSince = 0;
+        if (stallCheck != null) {
+            stallCheck.cancel(false);
+            stallCheck = null;
+        }
+        monitor.slowEnded(this);
+    }
+
+    private void disconnect(ChannelHandlerContext ctx, String reason) {
+        if (closing) return;
+        closing = true;
+        monitor.onDisconnect(this, reason);
+        discardParked();
+        recovered();
+        ctx.writeAndFlush(new CloseWebSocketFrame(SLOW_CONSUMER_CLOSE, "slow consumer: " + reason))
+            .addListener(ChannelFutureListener.CLOSE);
+        // the close frame itself may never drain
+        ctx.executor().schedule(() -> ctx.close(), CLOSE_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discardParked();
+        recovered();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discardParked();
+        recovered();
+    }
+
+    private void discardParked() {
+        Parked unit;
+        while ((unit = parked.pollFirst()) != null) {
+            unit.discard();
+        }
+        parkedBytes = 0;
+        attachTo = null;
+        attachmentsLeft = 0;
+        updateView();
+    }
+
+    private void updateView() {
+        pendingEvents = parked.size();
+        pendingBytes = parkedBytes;
+    }
+
+    private static void discard(WebSocketFrame frame, ChannelPromise promise) {
+        ReferenceCountUtil.release(frame);
+        promise.trySuccess();
+    }
+
+    /**
+     * The Engine.IO open packet (0{"sid":"..."}) is the first text frame of a websocket-only session.
+     */
+    private void captureSessionId(ByteBuf content) {
+        if (content.readableBytes() < 2 || content.getByte(content.readerIndex()) != '0') return;
+        String open = content.toString(StandardCharsets.UTF_8);
+        int start = open.indexOf("\"sid\":\"");
+        if (start < 0) return;
+        start += 7;
+        int end = open.indexOf('"', start);
+        if (end > start) sessionId = open.substring(start, end);
+    }
+
+    /**
+     * Frames and promises of one Socket.IO packet (a text frame plus its attachments).
+     */
+    private static final class Parked {
+        final int event;
+        final List<WebSocketFrame> frames = new ArrayList<>(1);
+        final List<ChannelPromise> promises = new ArrayList<>(1);
+        long bytes;
+
+        Parked(int event) {
+            this.event = event;
+        }
+
+        void add(WebSocketFrame frame, ChannelPromise promise) {
+            frames.add(frame);
+            promises.add(promise);
+            bytes += frame.content().readableBytes();
+        }
+
+        void writeTo(ChannelHandlerContext ctx) {
+            for (int i = 0; i < frames.size(); i++) {
+                ctx.write(frames.get(i), promises.get(i));
+            }
+        }
+
+        void discard() {
+            for (int i = 0; i < frames.size(); i++) {
+                OutboundGuard.discard(frames.get(i), promises.get(i));
+            }
+        }
+    }
+}
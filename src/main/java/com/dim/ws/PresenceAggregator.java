@@ -0,0 +1,151 @@
+package com.dim.ws;
+
+import com.dim.config.PresenceConfig;
+import com.dim.service.SessionService;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces presence transitions and sends one diff per room, to that room's members only:
+ * {"room": ..., "online": [userId...], "offline": [userId...]}.
+ *
+ * A user is announced online in a room when its first local session joins it, and offline when the
+ * last one leaves it or disconnects. Transitions that cancel out within the window (disconnect +
+ * reconnect) are not sent.
+ *
+ * Also the presence heartbeat: the Redis presence keys of the users connected here are renewed
+ * periodically, so a crashed instance's users expire instead of staying online.
+ */
+@ApplicationScoped
+public class PresenceAggregator {
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    PresenceConfig config;
+
+    @Inject
+    SocketIOServerWrapper wsServer;
+
+    @Inject
+    SessionService sessionService;
+
+    private final Map<String, Set<UUID>> userSessions = new ConcurrentHashMap<>();
+    // room + '\0' + userId -> local sessions of the user in the room
+    private final Map<String, Integer> roomSessions = new ConcurrentHashMap<>();
+    // room -> userId -> transition; inner maps are only touched inside pending.compute/remove
+    private final Map<String, Map<String, Transition>> pending = new ConcurrentHashMap<>();
+    private long timerId = -1;
+    private long heartbeatId = -1;
+
+    private record Transition(boolean initiallyOnline, boolean online) {}
+
+    @PostConstruct
+    void start() {
+        timerId = vertx.setPeriodic(config.windowMs(), id -> flush());
+        heartbeatId = vertx.setPeriodic(config.heartbeatIntervalMs(),
+            id -> sessionService.refreshPresence(List.copyOf(userSessions.keySet())));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (timerId >= 0) vertx.cancelTimer(timerId);
+        if (heartbeatId >= 0) vertx.cancelTimer(heartbeatId);
+    }
+
+    public void connected(String userId, UUID sessionId) {
+        userSessions.compute(userId, (u, sessions) -> {
+            if (sessions == null) sessions = new HashSet<>();
+            sessions.add(sessionId);
+            return sessions;
+        });
+    }
+
+    /**
+     * Whether the user has a session on this instance.
+     */
+    public boolean isConnected(String userId) {
+        return userSessions.containsKey(userId);
+    }
+
+    /**
+     * A session of the user joined the room; call once per session and room.
+     */
+    public void joined(String userId, String room) {
+        if (roomSessions.merge(room + '\0' + userId, 1, Integer::sum) == 1) {
+            record(room, userId, true);
+        }
+    }
+
+    /**
+     * A session of the user left the room it had joined.
+     */
+    public void left(String userId, String room) {
+        AtomicBoolean last = new AtomicBoolean();
+        roomSessions.computeIfPresent(room + '\0' + userId, (k, sessions) -> {
+            last.set(sessions == 1);
+            return sessions == 1 ? null : sessions - 1;
+        });
+        if (last.get()) record(room, userId, false);
+    }
+
+    /**
+     * @param rooms rooms the disconnected session was in
+     * @return whether it was the user's last session on this instance
+     */
+    public boolean disconnected(String userId, UUID sessionId, Set<String> rooms) {
+        AtomicBoolean last = new AtomicBoolean();
+        userSessions.computeIfPresent(userId, (u, sessions) -> {
+            sessions.remove(sessionId);
+            last.set(sessions.isEmpty());
+            return sessions.isEmpty() ? null : sessions;
+        });
+        if (rooms != null) {
+            rooms.forEach(room -> left(userId, room));
+        }
+        return last.get();
+    }
+
+    private void record(String room, String userId, boolean online) {
+        pending.compute(room, (r, diff) -> {
+            if (diff == null) diff = new HashMap<>();
+            diff.merge(userId, new Transition(!online, online),
+                (previous, next) -> new Transition(previous.initiallyOnline(), next.online()));
+            return diff;
+        });
+    }
+
+    void flush() {
+        for (String room : pending.keySet()) {
+            Map<String, Transition> diff = pending.remove(room);
+            if (diff == null) continue;
+            JsonArray online = new JsonArray();
+            JsonArray offline = new JsonArray();
+            diff.forEach((userId, t) -> {
+                if (t.online() == t.initiallyOnline()) return;
+                (t.online() ? online : offline).add(userId);
+            });
+            if (online.isEmpty() && offline.isEmpty()) continue;
+            wsServer.sendRoomEvent(room, "presence", new JsonObject()
+                .put("room", room)
+                .put("online", online)
+                .put("offline", offline)
+                .encode());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.dim.ws;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.List;
+
+/**
+ * Checks inbound Socket.IO event frames against the connection's token buckets before the websocket
+ * transport decodes them. Over-limit frames are released here and answered with an error ack, or an
+ * "error" event when no ack was requested.
+ *
+ * Runs on the channel's event loop; the buckets themselves may be shared with other connections.
+ */
+final class RateLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private final RateLimiter limiter;
+    private String userId;
+    private TokenBuckets buckets;
+
+    RateLimitHandler(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest request) {
+            if (userId == null) {
+                List<String> user = new QueryStringDecoder(request.uri()).parameters().get("userId");
+                if (user != null && !user.isEmpty()) userId = user.get(0);
+            }
+        } else if (msg instanceof TextWebSocketFrame frame) {
+            ByteBuf content = frame.content();
+            int type = limiter.eventType(content);
+            if (type >= 0) {
+                if (buckets == null) buckets = limiter.acquire(userId);
+                long now = System.nanoTime();
+                long wait = buckets.tryAcquire(type, now);
+                if (wait > 0) {
+                    reject(ctx, content, type, now, wait);
+                    ReferenceCountUtil.release(frame);
+                    return;
+                }
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private void reject(ChannelHandlerContext ctx, ByteBuf content, int type, long now, long wait) {
+        long ackId = SocketPackets.ackId(content);
+        if (!limiter.onRejected(buckets, type, now, ackId >= 0)) return;
+        String event = RateLimiter.EVENTS[type];
+        long retryAfterMs = RateLimiter.retryAfterMs(wait);
+        String packet = ackId >= 0
+            ? "43" + SocketPackets.namespace(content) + ackId
+                + "[{\"error\":\"rate_limited\",\"event\":\"" + event + "\",\"retryAfterMs\":" + retryAfterMs + "}]"
+            : "42" + SocketPackets.namespace(content)
+                + "[\"error\",{\"code\":\"rate_limited\",\"event\":\"" + event + "\",\"retryAfterMs\":" + retryAfterMs + "}]";
+        ctx.writeAndFlush(new TextWebSocketFrame(packet));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        limiter.release(userId, buckets);
+        buckets = null;
+        super.channelInactive(ctx);
+    }
+}
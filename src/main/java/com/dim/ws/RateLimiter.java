@@ -0,0 +1,168 @@
+package com.dim.ws;
+
+import com.corundumstudio.socketio.AckRequest;
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.Transport;
+import com.dim.config.RateLimitConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiting of the client events that fan out to rooms, Redis and Mongo, or read
+ * from Mongo (history pages).
+ *
+ * Websocket frames are checked by a {@link RateLimitHandler} in the channel pipeline, before
+ * netty-socketio decodes them; over-limit frames are released there. Polling clients are checked at
+ * the top of the listeners instead. Either way the client gets an error ack when it asked for one,
+ * otherwise a throttled "error" event.
+ */
+@ApplicationScoped
+public class RateLimiter {
+
+    static final int MESSAGE = 0;
+    static final int SIGNAL = 1;
+    static final int CALL = 2;
+    static final int HISTORY = 3;
+
+    static final String[] EVENTS = {"message", "signal", "call_metadata", "history"};
+    private static final byte[][] EVENT_BYTES = {
+        EVENTS[MESSAGE].getBytes(StandardCharsets.UTF_8),
+        EVENTS[SIGNAL].getBytes(StandardCharsets.UTF_8),
+        EVENTS[CALL].getBytes(StandardCharsets.UTF_8),
+        EVENTS[HISTORY].getBytes(StandardCharsets.UTF_8)
+    };
+    // polling clients: buckets kept in the client store
+    private static final String BUCKETS_ATTR = "rateLimit.buckets";
+
+    @Inject
+    RateLimitConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    private long[] intervalNanos;
+    private long[] toleranceNanos;
+    private long notifyIntervalNanos;
+    // USER key: buckets shared by every session of a user, ref-counted
+    private final Map<String, TokenBuckets> byUser = new ConcurrentHashMap<>();
+    private Counter[] rejected;
+
+    @PostConstruct
+    void init() {
+        double[] rates = {config.messageRate(), config.signalRate(), config.callMetadataRate(), config.historyRate()};
+        int[] bursts = {config.messageBurst(), config.signalBurst(), config.callMetadataBurst(), config.historyBurst()};
+        intervalNanos = new long[EVENTS.length];
+        toleranceNanos = new long[EVENTS.length];
+        rejected = new Counter[EVENTS.length];
+        for (int t = 0; t < EVENTS.length; t++) {
+            intervalNanos[t] = (long) (TimeUnit.SECONDS.toNanos(1) / rates[t]);
+            toleranceNanos[t] = intervalNanos[t] * Math.max(0, bursts[t] - 1);
+            rejected[t] = Counter.builder("scigal.socket.rate.limited")
+                .description("Client events rejected by the rate limiter")
+                .tag("event", EVENTS[t])
+                .register(registry);
+        }
+        notifyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.notifyIntervalMs());
+    }
+
+    boolean enabled() {
+        return config.enabled();
+    }
+
+    void install(Channel ch) {
+        if (!config.enabled()) return;
+        // inbound frames reach it before the websocket transport decodes them
+        ch.pipeline().addAfter("outboundGuard", "rateLimiter", new RateLimitHandler(this));
+    }
+
+    /**
+     * Rate-limited event type carried by a Socket.IO event packet, -1 for anything else.
+     */
+    int eventType(ByteBuf content) {
+        int name = SocketPackets.eventNameOffset(content);
+        if (name < 0) return -1;
+        for (int t = 0; t < EVENT_BYTES.length; t++) {
+            if (SocketPackets.nameIs(content, name, EVENT_BYTES[t])) return t;
+        }
+        return -1;
+    }
+
+    /**
+     * Buckets for a new connection: shared by user with the USER key, else private to the session.
+     */
+    TokenBuckets acquire(String userId) {
+        if (config.key() != RateLimitConfig.Key.USER || userId == null) {
+            return new TokenBuckets(intervalNanos, toleranceNanos);
+        }
+        return byUser.compute(userId, (k, b) -> {
+            if (b == null) return new TokenBuckets(intervalNanos, toleranceNanos);
+            b.refs.incrementAndGet();
+            return b;
+        });
+    }
+
+    void release(String userId, TokenBuckets buckets) {
+        if (userId == null || buckets == null) return;
+        byUser.computeIfPresent(userId, (k, b) -> b == buckets && b.refs.decrementAndGet() == 0 ? null : b);
+    }
+
+    /**
+     * Counts the rejection and tells whether the client should be notified (acks always are).
+     */
+    boolean onRejected(TokenBuckets buckets, int type, long now, boolean ackRequested) {
+        rejected[type].increment();
+        return ackRequested || buckets.shouldNotify(type, now, notifyIntervalNanos);
+    }
+
+    /**
+     * Listener-side check, for clients on the polling transport (websocket frames were checked in the
+     * pipeline already).
+     *
+     * @return false if the event is over limit and must be ignored
+     */
+    boolean allow(SocketIOClient client, int type, AckRequest ackSender) {
+        if (!config.enabled() || client.getTransport() == Transport.WEBSOCKET) return true;
+        TokenBuckets buckets = client.get(BUCKETS_ATTR);
+        if (buckets == null) {
+            buckets = acquire(client.getHandshakeData().getSingleUrlParam("userId"));
+            client.set(BUCKETS_ATTR, buckets);
+        }
+        long now = System.nanoTime();
+        long wait = buckets.tryAcquire(type, now);
+        if (wait == 0) return true;
+        boolean ack = ackSender.isAckRequested();
+        if (onRejected(buckets, type, now, ack)) {
+            long retryAfterMs = retryAfterMs(wait);
+            if (ack) {
+                ackSender.sendAckData(Map.of("error", "rate_limited", "event", EVENTS[type], "retryAfterMs", retryAfterMs));
+            } else {
+                client.sendEvent("error", Map.of("code", "rate_limited", "event", EVENTS[type], "retryAfterMs", retryAfterMs));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the buckets of a disconnected polling client.
+     */
+    void disconnected(SocketIOClient client) {
+        if (!config.enabled() || !client.has(BUCKETS_ATTR)) return;
+        TokenBuckets buckets = client.get(BUCKETS_ATTR);
+        client.del(BUCKETS_ATTR);
+        release(client.getHandshakeData().getSingleUrlParam("userId"), buckets);
+    }
+
+    static long retryAfterMs(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+}
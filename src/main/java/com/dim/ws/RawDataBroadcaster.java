@@ -1,42 +1,80 @@
 package com.dim.ws;
 
-import jakarta.enterprise.context.ApplicationScoped;
+import com.dim.config.RawPushConfig;
 import jakarta.inject.Inject;
+import jakarta.enterprise.context.ApplicationScoped;
 import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
 
 /**
  * CDI bean used by server code to broadcast raw bytes/text to websocket clients (Vert.x server).
+ *
+ * Bytes are sent as Socket.IO binary attachments ("binary" event), straight from the caller's array.
+ * The former hex dump text is only produced with scigal.raw.hex-debug=true.
  */
 @ApplicationScoped
 public class RawDataBroadcaster {
+    private static final HexFormat HEX = HexFormat.ofDelimiter(" ").withUpperCase();
+
     @Inject
     SocketIOServerWrapper wsServer;
 
+    @Inject
+    RawPushConfig config;
+
     public void broadcastBytes(byte[] data) {
         if (data == null) return;
-        StringBuilder sb = new StringBuilder();
-        for (byte b : data) {
-            sb.append(String.format("%02X ", b));
+        if (config.hexDebug()) {
+            wsServer.broadcastText(hexDump(data));
+            return;
         }
-        sb.append(" | ");
-        sb.append(new String(data, StandardCharsets.UTF_8));
-        wsServer.broadcastText(sb.toString());
+        wsServer.broadcastBinary(data);
+    }
+
+    /**
+     * Same as {@link #broadcastBytes(byte[])}, restricted to the members of a room.
+     */
+    public void broadcastBytes(String room, byte[] data) {
+        if (data == null) return;
+        if (room == null) {
+            broadcastBytes(data);
+            return;
+        }
+        if (config.hexDebug()) {
+            wsServer.broadcastToRoom(room, hexDump(data));
+            return;
+        }
+        wsServer.broadcastBinaryToRoom(room, data);
+    }
+
+    private static String hexDump(byte[] data) {
+        return HEX.formatHex(data) + "  | " + new String(data, StandardCharsets.UTF_8);
     }
 
     public void broadcastText(String text) {
         if (text == null) return;
         // If the payload is JSON and contains a room, route to room
+        io.vertx.core.json.JsonObject json;
         try {
-            io.vertx.core.json.JsonObject json = new io.vertx.core.json.JsonObject(text);
-            String room = json.getString("room", null);
-            String payload = json.getString("payload", json.getString("message", text));
-            if (room != null) {
-                wsServer.broadcastToRoom(room, payload);
-                return;
-            }
+            json = new io.vertx.core.json.JsonObject(text);
         } catch (Exception ignored) {
             // not JSON, fallthrough
+            wsServer.broadcastText(text);
+            return;
+        }
+        route(json, text);
+    }
+
+    /**
+     * Route an already parsed record: to its room if it has one (its payload or message, else the
+     * record text), else the record text to everyone.
+     */
+    public void route(io.vertx.core.json.JsonObject json, String raw) {
+        String room = json.getString("room", null);
+        if (room != null) {
+            wsServer.broadcastToRoom(room, json.getString("payload", json.getString("message", raw)));
+            return;
         }
-        wsServer.broadcastText(text);
+        wsServer.broadcastText(raw);
     }
 }
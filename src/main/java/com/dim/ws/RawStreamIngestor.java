@@ -0,0 +1,226 @@
+package com.dim.ws;
+
+import com.dim.config.RawPushConfig;
+import com.dim.model.IngestResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental parser for streamed bulk pushes (/raw/push/stream).
+ *
+ * Records are parsed as they arrive and handed to a single fan-out thread through a bounded queue.
+ * When Socket.IO fan-out falls behind the queue fills up and the request thread stops reading
+ * the body, which pushes back on the producer over TCP.
+ */
+@ApplicationScoped
+public class RawStreamIngestor {
+
+    private static final Logger LOG = Logger.getLogger(RawStreamIngestor.class);
+
+    @Inject
+    RawDataBroadcaster broadcaster;
+
+    @Inject
+    RawPushConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    private BlockingQueue<Record> queue;
+    private Thread fanOut;
+    private volatile boolean running;
+
+    private record Record(JsonObject json, String raw) {}
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(config.streamQueueCapacity());
+        Gauge.builder("scigal.raw.stream.queue", this, RawStreamIngestor::getQueueDepth)
+            .description("Streamed records waiting for the fan-out thread")
+            .register(registry);
+        running = true;
+        fanOut = Thread.ofPlatform().name("scigal-raw-fanout").daemon().start(this::runFanOut);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        fanOut.interrupt();
+    }
+
+    private void runFanOut() {
+        while (running) {
+            try {
+                Record record = queue.take();
+                broadcaster.route(record.json(), record.raw());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                LOG.debug("raw fan-out failed", e);
+            }
+        }
+    }
+
+    /**
+     * One JSON object per line. Lines are read as bytes, so a record never holds more than
+     * scigal.raw.max-record-bytes in memory: a longer one is skipped up to its end and rejected.
+     */
+    public IngestResult ingestNdjson(InputStream body) throws IOException {
+        IngestResult result = new IngestResult();
+        LineReader in = new LineReader(body, config.maxRecordBytes());
+        long index = 0;
+        while (in.next()) {
+            if (in.oversize) {
+                result.reject(++index, "record too large");
+                continue;
+            }
+            String line = in.text();
+            if (line.isBlank()) continue;
+            index++;
+            JsonObject json;
+            try {
+                json = new JsonObject(line);
+            } catch (Exception e) {
+                result.reject(index, "invalid JSON");
+                continue;
+            }
+            enqueue(result, index, new Record(json, line));
+        }
+        return result;
+    }
+
+    /**
+     * Frames of a 4-byte big-endian length followed by that many bytes of UTF-8 JSON.
+     */
+    public IngestResult ingestFramed(InputStream body) throws IOException {
+        IngestResult result = new IngestResult();
+        DataInputStream in = new DataInputStream(body);
+        long index = 0;
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException eof) {
+                break;
+            }
+            index++;
+            if (length < 0) {
+                result.reject(index, "invalid frame length");
+                break;
+            }
+            if (length > config.maxRecordBytes()) {
+                in.skipNBytes(length);
+                result.reject(index, "record too large");
+                continue;
+            }
+            byte[] frame = in.readNBytes(length);
+            if (frame.length < length) {
+                result.reject(index, "truncated frame");
+                break;
+            }
+            JsonObject json;
+            try {
+                json = new JsonObject(Buffer.buffer(frame));
+            } catch (Exception e) {
+                result.reject(index, "invalid JSON");
+                continue;
+            }
+            // routed like an NDJSON line: the record text is sent when it has no payload/message
+            enqueue(result, index, new Record(json, new String(frame, StandardCharsets.UTF_8)));
+        }
+        return result;
+    }
+
+    private void enqueue(IngestResult result, long index, Record record) {
+        try {
+            if (queue.offer(record, config.backpressureTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                result.accept();
+            } else {
+                result.reject(index, "fan-out saturated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.reject(index, "interrupted");
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Splits a byte stream on '\n' (a trailing '\r' is dropped), holding at most {@code max}
+     * bytes of a line.
+     */
+    private static final class LineReader {
+
+        private final InputStream in;
+        private final int max;
+        private final byte[] chunk = new byte[8192];
+        private int pos;
+        private int limit;
+        private byte[] line = new byte[256];
+        private int length;
+        // the current line is longer than max: its bytes were dropped
+        boolean oversize;
+
+        LineReader(InputStream in, int max) {
+            this.in = in;
+            this.max = max;
+        }
+
+        /**
+         * Read the next line; false at the end of the stream.
+         */
+        boolean next() throws IOException {
+            length = 0;
+            oversize = false;
+            boolean read = false;
+            while (true) {
+                if (pos == limit) {
+                    limit = in.read(chunk);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+                read = true;
+                byte b = chunk[pos++];
+                if (b == '\n') break;
+                if (oversize) continue;
+                // one byte over max is kept, it may be the '\r' of a line of exactly max bytes
+                if (length > max) {
+                    oversize = true;
+                    continue;
+                }
+                if (length == line.length) line = Arrays.copyOf(line, Math.min(max + 1, 2 * length));
+                line[length++] = b;
+            }
+            if (!oversize && length > 0 && line[length - 1] == '\r') length--;
+            if (length > max) oversize = true;
+            return read;
+        }
+
+        String text() {
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.dim.ws;
+
+import com.dim.config.PubSubConfig;
+import com.dim.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publisher side and bookkeeping shared by the Redis buses.
+ *
+ * Publishing goes through one long-lived connection: bursts are queued and flushed as a single
+ * pipelined batch of commands, and the connection is re-established automatically.
+ *
+ * Live instances register in the 'scigal:instances' sorted set (score: last heartbeat). While this
+ * instance is alone, events are not even queued, unless the bus keeps them for instances that are
+ * down (see {@link #keepsEventsForAbsentPeers()}). A starting instance announces itself on the bus,
+ * so the others resume publishing without waiting for their next heartbeat.
+ */
+abstract class RedisBus implements ClusterBus {
+
+    private static final Logger LOG = Logger.getLogger(RedisBus.class);
+
+    private static final String INSTANCES_KEY = "scigal:instances";
+    private static final String HELLO_TYPE = "bus.hello";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    PubSubConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    // default client of quarkus-redis-client (quarkus.redis.hosts)
+    @Inject
+    Redis client;
+
+    // prefer forwarding bus events to the Socket.IO server wrapper
+    @Inject
+    SocketIOServerWrapper socketIOServerWrapper;
+
+    protected final String instanceId = UUID.randomUUID().toString();
+    // room -> local members (updated under interestLock)
+    protected final Object interestLock = new Object();
+    protected final Map<String, Integer> roomInterest = new ConcurrentHashMap<>();
+
+    // publisher state, only touched on publisherContext
+    private Context publisherContext;
+    private RedisConnection pubConn;
+    private boolean connecting;
+    protected volatile boolean stopped;
+
+    private final Queue<PendingPublish> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // peers are assumed until the first heartbeat says otherwise
+    private volatile boolean peers = true;
+    private volatile int liveInstances;
+    private long heartbeatTimer = -1;
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishFailed = new LongAdder();
+    private final LongAdder publishDropped = new LongAdder();
+    private final LongAdder publishSkipped = new LongAdder();
+    private final LongAdder publishLatencyTotalNanos = new LongAdder();
+    private final AtomicLong publishLatencyMaxNanos = new AtomicLong();
+    private Timer publishLag;
+    private Timer receiveLag;
+    private Counter received;
+
+    /**
+     * @param channel pub/sub channel of the event
+     * @param targetInstance instance the event is addressed to, null for all
+     */
+    protected record PendingPublish(String channel, String targetInstance, String payload, long enqueuedAt) {}
+
+    @PostConstruct
+    void start() {
+        registerMeters();
+        publisherContext = vertx.getOrCreateContext();
+        publisherContext.runOnContext(v -> connectPublisher());
+        startConsumer();
+        if (config.peerDetection()) {
+            heartbeat();
+            heartbeatTimer = vertx.setPeriodic(config.peerHeartbeatMs(), id -> heartbeat());
+            // in a room nobody joins: instances that predate the hello ignore it
+            enqueue(globalChannel(), null, new JsonObject()
+                .put("type", HELLO_TYPE).put("origin", instanceId).put("room", HELLO_TYPE).encode());
+        }
+    }
+
+    /**
+     * Start receiving events from the other instances.
+     */
+    protected abstract void startConsumer();
+
+    protected abstract void stopConsumer();
+
+    /**
+     * Command writing one queued event to Redis.
+     */
+    protected abstract Request command(PendingPublish p);
+
+    /**
+     * Pub/sub channel of an event.
+     */
+    protected abstract String channelFor(Message msg);
+
+    protected abstract String globalChannel();
+
+    protected abstract String instanceChannel(String instanceId);
+
+    /**
+     * Whether events of rooms without local members may be received (and must be dropped).
+     */
+    protected abstract boolean receivesForeignRooms();
+
+    /**
+     * Whether events published while no other instance is live are still read later, by instances
+     * that restart or reconnect. Such buses keep publishing when alone.
+     */
+    protected boolean keepsEventsForAbsentPeers() {
+        return false;
+    }
+
+    /**
+     * The local member count of a room went from 0 to 1 ({@code interested}) or back. Called under
+     * {@link #interestLock}.
+     */
+    protected void roomInterestChanged(String room, boolean interested) {
+    }
+
+    /**
+     * Publish lag is measured from enqueue to the Redis reply; receive lag from the origin's send time
+     * to the local receipt, so it includes clock skew between hosts.
+     */
+    private void registerMeters() {
+        publishLag = Timer.builder("scigal.bus.publish.lag")
+            .description("Enqueue to Redis reply of a published event")
+            .publishPercentileHistogram()
+            .register(registry);
+        receiveLag = Timer.builder("scigal.bus.receive.lag")
+            .description("Origin send time to receipt from the bus (wall clock)")
+            .publishPercentileHistogram()
+            .register(registry);
+        received = Counter.builder("scigal.bus.received")
+            .description("Events received from other instances")
+            .register(registry);
+        FunctionCounter.builder("scigal.bus.publish", this, RedisBus::getPublishedCount)
+            .description("Publications by outcome").tag("outcome", "ok").register(registry);
+        FunctionCounter.builder("scigal.bus.publish", this, RedisBus::getPublishFailedCount)
+            .description("Publications by outcome").tag("outcome", "failed").register(registry);
+        FunctionCounter.builder("scigal.bus.publish", this, RedisBus::getPublishDroppedCount)
+            .description("Publications by outcome").tag("outcome", "dropped").register(registry);
+        FunctionCounter.builder("scigal.bus.publish", this, RedisBus::getPublishSkippedCount)
+            .description("Publications by outcome").tag("outcome", "skipped").register(registry);
+        Gauge.builder("scigal.bus.publish.pending", this, RedisBus::getPendingCount)
+            .description("Publications queued, not yet written to Redis").register(registry);
+        Gauge.builder("scigal.bus.publish.in-flight", this, RedisBus::getInFlightCount)
+            .description("Publish commands awaiting a reply").register(registry);
+        Gauge.builder("scigal.bus.instances", this, RedisBus::getLiveInstances)
+            .description("Live instances seen at the last heartbeat, this one included").register(registry);
+        registerMeters(registry);
+    }
+
+    /**
+     * Implementation specific meters.
+     */
+    protected void registerMeters(MeterRegistry registry) {
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public boolean hasPeers() {
+        return peers;
+    }
+
+    @Override
+    public void publish(Message msg) {
+        if (!peers && !keepsEventsForAbsentPeers()) {
+            publishSkipped.increment();
+            return;
+        }
+        enqueue(channelFor(msg), null, msg.wire());
+    }
+
+    @Override
+    public void publishTo(String targetInstanceId, Message msg) {
+        enqueue(instanceChannel(targetInstanceId), targetInstanceId, msg.wire());
+    }
+
+    private void enqueue(String channel, String targetInstance, String payload) {
+        if (pendingCount.incrementAndGet() > config.maxPending()) {
+            pendingCount.decrementAndGet();
+            publishDropped.increment();
+            return;
+        }
+        pending.add(new PendingPublish(channel, targetInstance, payload, System.nanoTime()));
+        scheduleFlush();
+    }
+
+    /**
+     * Register one more local member of a room.
+     */
+    @Override
+    public void retainRoom(String room) {
+        synchronized (interestLock) {
+            if (roomInterest.merge(room, 1, Integer::sum) == 1) {
+                roomInterestChanged(room, true);
+            }
+        }
+    }
+
+    /**
+     * Unregister a local member of a room.
+     */
+    @Override
+    public void releaseRoom(String room) {
+        synchronized (interestLock) {
+            Integer members = roomInterest.get(room);
+            if (members == null) return;
+            if (members > 1) {
+                roomInterest.put(room, members - 1);
+                return;
+            }
+            roomInterest.remove(room);
+            roomInterestChanged(room, false);
+        }
+    }
+
+    public boolean hasLocalInterest(String room) {
+        return roomInterest.containsKey(room);
+    }
+
+    /**
+     * Handle one event read from the bus.
+     */
+    protected void onBusPayload(Buffer payload) {
+        try {
+            JsonObject json = new JsonObject(payload);
+            String origin = json.getString("origin", "");
+            if (instanceId.equals(origin)) return;
+            if (HELLO_TYPE.equals(json.getString("type"))) {
+                peers = true;
+                return;
+            }
+            String room = json.getString("room", null);
+            // targeted events are addressed, whatever their room
+            if (room != null && receivesForeignRooms() && !hasLocalInterest(room) && !json.containsKey("target")) return;
+            received.increment();
+            long sentAt = json.getLong("sentAt", 0L);
+            if (sentAt > 0) {
+                receiveLag.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+            }
+            // forward to Socket.IO server wrapper which will route to clients
+            socketIOServerWrapper.onPubSub(EnvelopeCodec.fromBus(json, payload));
+        } catch (Exception e) {
+            LOG.debug("invalid bus payload", e);
+        }
+    }
+
+    /**
+     * Refresh this instance in the live set, forget the ones silent for longer than the TTL, and count
+     * the rest (wall clock: hosts are assumed in sync well within the TTL).
+     */
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        client.batch(List.of(
+                Request.cmd(Command.ZADD).arg(INSTANCES_KEY).arg(now).arg(instanceId),
+                Request.cmd(Command.ZREMRANGEBYSCORE).arg(INSTANCES_KEY).arg("-inf").arg(now - config.peerTtlMs()),
+                Request.cmd(Command.ZCARD).arg(INSTANCES_KEY)))
+            .onComplete(ar -> {
+                if (ar.failed()) {
+                    // unknown: keep publishing
+                    peers = true;
+                    LOG.debug("bus heartbeat failed", ar.cause());
+                    return;
+                }
+                Response card = ar.result().get(2);
+                int live = card != null ? card.toInteger() : 0;
+                boolean alone = live <= 1;
+                if (alone == peers) {
+                    LOG.infof(alone ? "no other live instance, cross-node publishing paused"
+                        : "%d live instances, cross-node publishing resumed", live);
+                }
+                liveInstances = live;
+                peers = !alone;
+            });
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            publisherContext.runOnContext(v -> flush());
+        }
+    }
+
+    /**
+     * Drain everything queued since the last flush into pipelined batches on the shared connection.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (pubConn == null) {
+            // flush reprendra une fois la connexion rétablie
+            connectPublisher();
+            return;
+        }
+        while (!pending.isEmpty()) {
+            List<Request> batch = new ArrayList<>();
+            List<PendingPublish> sent = new ArrayList<>();
+            PendingPublish p;
+            while (batch.size() < config.maxBatch() && (p = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.add(command(p));
+                sent.add(p);
+            }
+            inFlight.addAndGet(sent.size());
+            pubConn.batch(batch).onComplete(ar -> {
+                inFlight.addAndGet(-sent.size());
+                if (ar.succeeded()) {
+                    long now = System.nanoTime();
+                    for (PendingPublish done : sent) {
+                        long latency = now - done.enqueuedAt();
+                        publishLatencyTotalNanos.add(latency);
+                        publishLatencyMaxNanos.accumulateAndGet(latency, Math::max);
+                        publishLag.record(latency, TimeUnit.NANOSECONDS);
+                    }
+                    published.add(sent.size());
+                } else {
+                    publishFailed.add(sent.size());
+                    LOG.debugf(ar.cause(), "redis publish batch of %d failed", sent.size());
+                }
+            });
+        }
+    }
+
+    private void connectPublisher() {
+        if (connecting || stopped || pubConn != null) return;
+        connecting = true;
+        client.connect().onComplete(ar -> {
+            connecting = false;
+            if (ar.succeeded()) {
+                RedisConnection conn = ar.result();
+                if (stopped) {
+                    conn.close();
+                    return;
+                }
+                pubConn = conn;
+                conn.exceptionHandler(e -> onPublisherLost(conn, e));
+                conn.endHandler(v -> onPublisherLost(conn, null));
+                scheduleFlush();
+            } else {
+                LOG.debugf(ar.cause(), "redis publisher connection failed, retrying in %d ms", config.reconnectDelayMs());
+                vertx.setTimer(config.reconnectDelayMs(), t -> connectPublisher());
+            }
+        });
+    }
+
+    private void onPublisherLost(RedisConnection conn, Throwable cause) {
+        if (pubConn != conn) return;
+        pubConn = null;
+        LOG.debug("redis publisher connection lost", cause);
+        if (!stopped) {
+            vertx.setTimer(config.reconnectDelayMs(), t -> connectPublisher());
+        }
+    }
+
+    /** Number of publish commands sent and awaiting a reply. */
+    public long getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /** Number of publications queued but not yet written to Redis. */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getPublishFailedCount() {
+        return publishFailed.sum();
+    }
+
+    public long getPublishDroppedCount() {
+        return publishDropped.sum();
+    }
+
+    /** Publications not sent because no other instance was live (PUBSUB only). */
+    public long getPublishSkippedCount() {
+        return publishSkipped.sum();
+    }
+
+    public int getLiveInstances() {
+        return liveInstances;
+    }
+
+    /** Mean enqueue-to-reply publish latency, in microseconds. */
+    public double getAveragePublishLatencyMicros() {
+        long count = published.sum();
+        return count == 0 ? 0 : publishLatencyTotalNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxPublishLatencyMicros() {
+        return publishLatencyMaxNanos.get() / 1000.0;
+    }
+
+    @PreDestroy
+    void stop() {
+        stopped = true;
+        try {
+            if (heartbeatTimer >= 0) vertx.cancelTimer(heartbeatTimer);
+            if (config.peerDetection()) client.send(Request.cmd(Command.ZREM).arg(INSTANCES_KEY).arg(instanceId));
+            stopConsumer();
+            if (pubConn != null) pubConn.close();
+        } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,156 @@
+package com.dim.ws;
+
+import com.dim.model.Message;
+import com.dim.model.SignalMessage;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import org.jboss.logging.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Redis PUBLISH/SUBSCRIBE bus. Room events are published on a per-room channel ('scigal:room:{room}',
+ * or 'scigal:shard:{n}' when sharding is configured), everything else on 'scigal:messages'. An instance
+ * only subscribes to the channels of rooms it has local members in, plus its private
+ * 'scigal:instance:{instanceId}' channel for events addressed to one of its sessions.
+ *
+ * Fire-and-forget: events published while an instance is disconnected are lost to it
+ * (see {@link RedisStreamsBus}). A lost subscriber connection is reopened after
+ * scigal.pubsub.reconnect-delay-ms, with every current channel subscribed again.
+ */
+@ApplicationScoped
+@Typed(RedisPubSubBus.class)
+public class RedisPubSubBus extends RedisBus {
+
+    private static final String CHANNEL = "scigal:messages";
+    private static final String ROOM_CHANNEL_PREFIX = "scigal:room:";
+    private static final String SHARD_CHANNEL_PREFIX = "scigal:shard:";
+    private static final String INSTANCE_CHANNEL_PREFIX = "scigal:instance:";
+
+    private static final Logger LOG = Logger.getLogger(RedisPubSubBus.class);
+
+    private volatile RedisConnection subConn;
+    // channel -> locally interesting rooms (guarded by interestLock)
+    private final Map<String, Integer> channelInterest = new HashMap<>();
+
+    @Override
+    protected void startConsumer() {
+        connectSubscriber();
+    }
+
+    private void connectSubscriber() {
+        if (stopped) return;
+        client.connect().onComplete(ar -> {
+            if (ar.failed()) {
+                LOG.debugf(ar.cause(), "redis subscriber connection failed, retrying in %d ms", config.reconnectDelayMs());
+                vertx.setTimer(config.reconnectDelayMs(), t -> connectSubscriber());
+                return;
+            }
+            RedisConnection conn = ar.result();
+            if (stopped) {
+                conn.close();
+                return;
+            }
+            conn.handler(resp -> {
+                // only message/pmessage pushes carry a payload, everything else is ignored
+                Buffer payload = RespPushDecoder.payload(resp);
+                if (payload != null) onBusPayload(payload);
+            });
+            conn.exceptionHandler(e -> onSubscriberLost(conn, e));
+            conn.endHandler(v -> onSubscriberLost(conn, null));
+            // subscribe to the global and private channels plus every room joined while disconnected
+            synchronized (interestLock) {
+                Request subscribe = Request.cmd(Command.SUBSCRIBE).arg(CHANNEL).arg(instanceChannel(instanceId));
+                channelInterest.keySet().forEach(subscribe::arg);
+                conn.send(subscribe).onFailure(e -> onSubscriberLost(conn, e));
+                subConn = conn;
+            }
+        });
+    }
+
+    private void onSubscriberLost(RedisConnection conn, Throwable cause) {
+        synchronized (interestLock) {
+            if (subConn != conn) return;
+            subConn = null;
+        }
+        conn.close();
+        LOG.debug("redis subscriber connection lost", cause);
+        if (!stopped) {
+            vertx.setTimer(config.reconnectDelayMs(), t -> connectSubscriber());
+        }
+    }
+
+    @Override
+    protected void stopConsumer() {
+        RedisConnection conn = subConn;
+        subConn = null;
+        if (conn != null) conn.close();
+    }
+
+    @Override
+    protected Request command(PendingPublish p) {
+        return Request.cmd(Command.PUBLISH).arg(p.channel()).arg(p.payload());
+    }
+
+    /**
+     * Room-scoped events go to the room channel; targeted and server-wide events stay on the global one.
+     */
+    @Override
+    protected String channelFor(Message msg) {
+        String room = msg.getRoom();
+        if (room == null) return CHANNEL;
+        if (msg instanceof SignalMessage signal && signal.getTarget() != null) return CHANNEL;
+        return roomChannel(room);
+    }
+
+    @Override
+    protected String globalChannel() {
+        return CHANNEL;
+    }
+
+    @Override
+    protected String instanceChannel(String instanceId) {
+        return INSTANCE_CHANNEL_PREFIX + instanceId;
+    }
+
+    private String roomChannel(String room) {
+        int shards = config.roomShards();
+        if (shards <= 0) return ROOM_CHANNEL_PREFIX + room;
+        return SHARD_CHANNEL_PREFIX + Math.floorMod(room.hashCode(), shards);
+    }
+
+    /**
+     * With sharded channels we may receive rooms nobody here is in.
+     */
+    @Override
+    protected boolean receivesForeignRooms() {
+        return config.roomShards() > 0;
+    }
+
+    /**
+     * Subscribes to a room's channel with its first local member, unsubscribes after the last one.
+     */
+    @Override
+    protected void roomInterestChanged(String room, boolean interested) {
+        String roomChannel = roomChannel(room);
+        if (interested) {
+            if (channelInterest.merge(roomChannel, 1, Integer::sum) == 1) {
+                RedisConnection conn = subConn;
+                if (conn != null) conn.send(Request.cmd(Command.SUBSCRIBE).arg(roomChannel));
+            }
+            return;
+        }
+        Integer rooms = channelInterest.remove(roomChannel);
+        if (rooms != null && rooms > 1) {
+            channelInterest.put(roomChannel, rooms - 1);
+            return;
+        }
+        RedisConnection conn = subConn;
+        if (conn != null) conn.send(Request.cmd(Command.UNSUBSCRIBE).arg(roomChannel));
+    }
+}
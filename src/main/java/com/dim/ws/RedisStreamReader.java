@@ -0,0 +1,183 @@
+package com.dim.ws;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Consumer side of the Redis Streams bus: one consumer group per node, so every node sees every
+ * entry and Redis keeps each node's position.
+ *
+ * New entries ('>') are read in blocking batches with NOACK: they are handed over synchronously as
+ * soon as they are read, so there is nothing to acknowledge later and no pending list to replay. The
+ * group's position is what survives a disconnection: after a reconnection the node reads on from the
+ * last entry it was given. The group is created at the end of the stream the first time a node is
+ * seen, so a new node does not replay history.
+ *
+ * Only a node with a stable id (see PubSubConfig#streamNodeId) finds its group again after a restart.
+ * Without one the group is named after the instance, and destroyed on a clean stop so that restarts
+ * do not leave orphan groups behind.
+ *
+ * Entries carry the event in field 'd' and, for events addressed to one instance, its id in 'i'.
+ */
+final class RedisStreamReader {
+
+    private static final Logger LOG = Logger.getLogger(RedisStreamReader.class);
+
+    static final String DATA_FIELD = "d";
+    static final String TARGET_FIELD = "i";
+    private static final String NEW_ENTRIES = ">";
+    private static final String GROUP_PREFIX = "scigal-";
+
+    private final Vertx vertx;
+    private final Redis client;
+    private final String key;
+    private final String group;
+    private final String consumer;
+    private final String instanceId;
+    private final int count;
+    private final long blockMs;
+    private final long reconnectDelayMs;
+    private final Consumer<Buffer> handler;
+    // group named after this process only: nobody resumes it after a restart
+    private final boolean ephemeral;
+
+    private RedisConnection conn;
+    private volatile boolean stopped;
+    final LongAdder read = new LongAdder();
+
+    /**
+     * @param nodeId stable id of the node, or null to read as this instance only
+     */
+    RedisStreamReader(Vertx vertx, Redis client, String key, String nodeId, String instanceId, int count,
+                      long blockMs, long reconnectDelayMs, Consumer<Buffer> handler) {
+        this.vertx = vertx;
+        this.client = client;
+        this.key = key;
+        this.ephemeral = nodeId == null;
+        this.consumer = ephemeral ? instanceId : nodeId;
+        this.group = GROUP_PREFIX + consumer;
+        this.instanceId = instanceId;
+        this.count = count;
+        this.blockMs = blockMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.handler = handler;
+    }
+
+    void start() {
+        connect();
+    }
+
+    private void connect() {
+        if (stopped) return;
+        client.connect().onComplete(ar -> {
+            if (ar.failed()) {
+                retry(ar.cause());
+                return;
+            }
+            RedisConnection c = ar.result();
+            if (stopped) {
+                c.close();
+                return;
+            }
+            conn = c;
+            c.exceptionHandler(e -> lost(c, e));
+            c.endHandler(v -> lost(c, null));
+            c.send(Request.cmd(Command.XGROUP).arg("CREATE").arg(key).arg(group).arg("$").arg("MKSTREAM"))
+                .onComplete(created -> {
+                    // BUSYGROUP: the node already has a position
+                    if (created.failed() && !String.valueOf(created.cause().getMessage()).startsWith("BUSYGROUP")) {
+                        lost(c, created.cause());
+                        return;
+                    }
+                    LOG.infof("reading stream %s as group %s", key, group);
+                    read(c);
+                });
+        });
+    }
+
+    private void read(RedisConnection c) {
+        if (stopped || conn != c) return;
+        Request xread = Request.cmd(Command.XREADGROUP).arg("GROUP").arg(group).arg(consumer)
+            .arg("COUNT").arg(count).arg("BLOCK").arg(blockMs).arg("NOACK")
+            .arg("STREAMS").arg(key).arg(NEW_ENTRIES);
+        c.send(xread).onComplete(ar -> {
+            if (ar.failed()) {
+                lost(c, ar.cause());
+                return;
+            }
+            Response entries = entries(ar.result());
+            if (entries != null) {
+                for (Response entry : entries) {
+                    deliver(entry.get(1));
+                }
+                read.add(entries.size());
+            }
+            read(c);
+        });
+    }
+
+    private void deliver(Response fields) {
+        if (fields == null) return;
+        Buffer data = null;
+        String target = null;
+        if (fields.isMap()) {
+            Response d = fields.get(DATA_FIELD);
+            Response i = fields.get(TARGET_FIELD);
+            data = d != null ? d.toBuffer() : null;
+            target = i != null ? i.toString() : null;
+        } else {
+            for (int f = 0; f + 1 < fields.size(); f += 2) {
+                String name = fields.get(f).toString();
+                if (DATA_FIELD.equals(name)) data = fields.get(f + 1).toBuffer();
+                else if (TARGET_FIELD.equals(name)) target = fields.get(f + 1).toString();
+            }
+        }
+        if (data == null || (target != null && !target.equals(instanceId))) return;
+        try {
+            handler.accept(data);
+        } catch (Exception e) {
+            LOG.debug("stream entry handler failed", e);
+        }
+    }
+
+    /**
+     * Entries of our stream in an XREADGROUP reply: [[key, entries]] (RESP2) or {key: entries} (RESP3),
+     * null on timeout.
+     */
+    private Response entries(Response reply) {
+        if (reply == null || reply.size() == 0) return null;
+        if (reply.isMap()) return reply.get(key);
+        Response stream = reply.get(0);
+        return stream != null && stream.size() > 1 ? stream.get(1) : null;
+    }
+
+    private void lost(RedisConnection c, Throwable cause) {
+        if (conn != c) return;
+        conn = null;
+        c.close();
+        retry(cause);
+    }
+
+    private void retry(Throwable cause) {
+        if (stopped) return;
+        LOG.debugf(cause, "redis stream reader disconnected, retrying in %d ms", reconnectDelayMs);
+        vertx.setTimer(reconnectDelayMs, t -> connect());
+    }
+
+    void stop() {
+        stopped = true;
+        RedisConnection c = conn;
+        conn = null;
+        if (c != null) c.close();
+        if (ephemeral) client.send(Request.cmd(Command.XGROUP).arg("DESTROY").arg(key).arg(group));
+    }
+}
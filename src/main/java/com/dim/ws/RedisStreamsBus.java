@@ -0,0 +1,85 @@
+package com.dim.ws;
+
+import com.dim.model.Message;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+
+/**
+ * Redis Streams bus: every event is an XADD to one capped stream, read back by a
+ * {@link RedisStreamReader}. Events published while an instance is disconnected are read when it
+ * reconnects instead of being lost, and after a restart too when the node has a stable id
+ * (scigal.pubsub.stream-node-id). Every instance reads the whole stream and drops rooms it has no
+ * local members in.
+ */
+@ApplicationScoped
+@Typed(RedisStreamsBus.class)
+public class RedisStreamsBus extends RedisBus {
+
+    private RedisStreamReader streamReader;
+
+    @Override
+    protected void startConsumer() {
+        streamReader = new RedisStreamReader(vertx, client, config.streamKey(), config.streamNodeId().orElse(null), instanceId,
+            config.streamReadCount(), config.streamBlockMs(), config.reconnectDelayMs(), this::onBusPayload);
+        streamReader.start();
+    }
+
+    @Override
+    protected void stopConsumer() {
+        if (streamReader != null) streamReader.stop();
+    }
+
+    @Override
+    protected void registerMeters(MeterRegistry registry) {
+        FunctionCounter.builder("scigal.bus.stream.read", this,
+                bus -> bus.streamReader != null ? bus.streamReader.read.sum() : 0)
+            .description("Stream entries read by this instance").register(registry);
+    }
+
+    /**
+     * Entries are tagged with the instance they are addressed to, if any.
+     */
+    @Override
+    protected Request command(PendingPublish p) {
+        Request xadd = Request.cmd(Command.XADD).arg(config.streamKey())
+            .arg("MAXLEN").arg("~").arg(config.streamMaxLen()).arg("*")
+            .arg(RedisStreamReader.DATA_FIELD).arg(p.payload());
+        if (p.targetInstance() != null) xadd.arg(RedisStreamReader.TARGET_FIELD).arg(p.targetInstance());
+        return xadd;
+    }
+
+    // a single stream: channels are not used
+
+    @Override
+    protected String channelFor(Message msg) {
+        return config.streamKey();
+    }
+
+    @Override
+    protected String globalChannel() {
+        return config.streamKey();
+    }
+
+    @Override
+    protected String instanceChannel(String instanceId) {
+        return config.streamKey();
+    }
+
+    @Override
+    protected boolean receivesForeignRooms() {
+        return true;
+    }
+
+    /**
+     * A peer whose heartbeat lapsed may be restarting or cut off from Redis: what is written to the
+     * stream meanwhile is what it replays when it comes back.
+     */
+    @Override
+    protected boolean keepsEventsForAbsentPeers() {
+        return true;
+    }
+}
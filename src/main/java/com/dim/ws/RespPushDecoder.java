@@ -0,0 +1,65 @@
+package com.dim.ws;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.ResponseType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes Redis pub/sub pushes straight from the {@link Response} elements.
+ * message  -> [message, channel, payload]
+ * pmessage -> [pmessage, pattern, channel, payload]
+ * Payloads are returned as the bulk {@link Buffer} itself, no intermediate String.
+ */
+final class RespPushDecoder {
+
+    private static final byte[] MESSAGE = "message".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PMESSAGE = "pmessage".getBytes(StandardCharsets.US_ASCII);
+
+    private RespPushDecoder() {}
+
+    /**
+     * @return the payload of a message/pmessage push, or null for any other reply
+     *         (subscribe confirmations, pongs...)
+     */
+    static Buffer payload(Response resp) {
+        int kind = kind(resp);
+        if (kind == 0) return null;
+        return resp.get(kind == 1 ? 2 : 3).toBuffer();
+    }
+
+    /**
+     * @return the channel a message/pmessage push was published on, or null
+     */
+    static Buffer channel(Response resp) {
+        int kind = kind(resp);
+        if (kind == 0) return null;
+        return resp.get(kind == 1 ? 1 : 2).toBuffer();
+    }
+
+    /**
+     * 1 for message, 2 for pmessage, 0 otherwise.
+     */
+    private static int kind(Response resp) {
+        if (resp == null) return 0;
+        ResponseType type = resp.type();
+        if (type != ResponseType.PUSH && type != ResponseType.MULTI) return 0;
+        int size = resp.size();
+        if (size != 3 && size != 4) return 0;
+        Response head = resp.get(0);
+        if (head == null || head.type() != ResponseType.BULK) return 0;
+        Buffer name = head.toBuffer();
+        if (size == 3 && matches(name, MESSAGE)) return 1;
+        if (size == 4 && matches(name, PMESSAGE)) return 2;
+        return 0;
+    }
+
+    private static boolean matches(Buffer buf, byte[] expected) {
+        if (buf.length() != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buf.getByte(i) != expected[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+package com.dim.ws;
+
+import com.dim.config.SessionRegistryConfig;
+import com.dim.service.SessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Cluster-wide map of Socket.IO sessions to the instance that owns them, kept in Redis
+ * ('scigal:session:{sessionId}' = instance id, with a TTL extended by a periodic heartbeat).
+ *
+ * A session id never moves between instances, so resolved owners are cached locally until they
+ * expire. Concurrent lookups of the same session share one GET and complete in arrival order, so
+ * an offer and the ICE candidates that follow it are forwarded in order.
+ */
+@ApplicationScoped
+public class SessionRegistry {
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    SessionRegistryConfig config;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    ClusterBus bus;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Set<String> local = ConcurrentHashMap.newKeySet();
+    private final Map<String, Owner> cache = new ConcurrentHashMap<>();
+    // lookups in flight and the callbacks waiting for them (guarded by itself)
+    private final Map<String, List<Consumer<String>>> lookups = new HashMap<>();
+    private long timerId = -1;
+
+    private Counter cached;
+    private Counter fetched;
+    private Counter unknown;
+
+    private record Owner(String instanceId, long expiresAt) {}
+
+    @PostConstruct
+    void start() {
+        cached = lookupCounter("cached");
+        fetched = lookupCounter("fetched");
+        unknown = lookupCounter("unknown");
+        Gauge.builder("scigal.session.registry.local", local, Set::size)
+            .description("Sessions registered by this instance")
+            .register(registry);
+        if (config.enabled()) {
+            timerId = vertx.setPeriodic(config.heartbeatIntervalMs(),
+                id -> sessionService.refreshOwners(List.copyOf(local), config.ttlSeconds()));
+        }
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("scigal.session.registry.lookups")
+            .description("Owner lookups of targeted sessions by result")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (timerId >= 0) vertx.cancelTimer(timerId);
+        // best-effort: the entries expire anyway
+        local.forEach(sessionService::deleteOwner);
+        local.clear();
+    }
+
+    public boolean isEnabled() {
+        return config.enabled();
+    }
+
+    public void register(UUID sessionId) {
+        if (!config.enabled()) return;
+        String id = sessionId.toString();
+        local.add(id);
+        sessionService.registerOwner(id, bus.getInstanceId(), config.ttlSeconds());
+    }
+
+    public void unregister(UUID sessionId) {
+        if (!config.enabled()) return;
+        String id = sessionId.toString();
+        if (local.remove(id)) {
+            sessionService.deleteOwner(id);
+        }
+    }
+
+    /**
+     * Resolve the instance owning a remote session; the callback gets null when it is unknown.
+     * Runs the callback inline on a cache hit, else on the Redis client's context.
+     */
+    public void ownerOf(String sessionId, Consumer<String> callback) {
+        Owner owner = cache.get(sessionId);
+        if (owner != null) {
+            if (owner.expiresAt() > System.currentTimeMillis()) {
+                cached.increment();
+                callback.accept(owner.instanceId());
+                return;
+            }
+            cache.remove(sessionId, owner);
+        }
+        boolean first;
+        synchronized (lookups) {
+            // resolved while we were waiting for the lock: the queued callbacks have all run
+            owner = cache.get(sessionId);
+            if (owner != null && owner.expiresAt() > System.currentTimeMillis()) {
+                cached.increment();
+                callback.accept(owner.instanceId());
+                return;
+            }
+            List<Consumer<String>> waiting = lookups.get(sessionId);
+            first = waiting == null;
+            if (first) {
+                waiting = new ArrayList<>(2);
+                lookups.put(sessionId, waiting);
+            }
+            waiting.add(callback);
+        }
+        if (first) {
+            sessionService.getOwner(sessionId).onComplete(ar -> resolved(sessionId, ar.succeeded() ? ar.result() : null));
+        }
+    }
+
+    private void resolved(String sessionId, String instanceId) {
+        (instanceId != null ? fetched : unknown).increment();
+        synchronized (lookups) {
+            // the waiting callbacks run before the owner is cached: until then, a signal arriving
+            // meanwhile misses the cache and waits for this lock instead of overtaking them
+            List<Consumer<String>> waiting = lookups.remove(sessionId);
+            if (waiting != null) waiting.forEach(callback -> callback.accept(instanceId));
+            if (instanceId != null) {
+                if (cache.size() >= config.cacheMaxEntries()) evict();
+                cache.put(sessionId, new Owner(instanceId, System.currentTimeMillis() + config.cacheTtlMs()));
+            }
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(owner -> owner.expiresAt() <= now);
+        if (cache.size() >= config.cacheMaxEntries()) cache.clear();
+    }
+}
@@ -0,0 +1,159 @@
+package com.dim.ws;
+
+import com.corundumstudio.socketio.SocketIOChannelInitializer;
+import com.dim.config.OutboundConfig;
+import com.dim.config.OutboundConfig.SlowConsumerPolicy;
+import com.dim.model.SlowConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Slow-consumer protection: installs an {@link OutboundGuard} and the write buffer water marks on
+ * every Socket.IO channel, counts what the guards drop, coalesce and disconnect, and lists the
+ * clients currently above the high water mark.
+ */
+@ApplicationScoped
+public class SlowConsumerMonitor {
+
+    private static final Logger LOG = Logger.getLogger(SlowConsumerMonitor.class);
+
+    static final String REASON_BUDGET = "outbound budget exceeded";
+    static final String REASON_STALLED = "stalled";
+
+    @Inject
+    OutboundConfig config;
+
+    @Inject
+    MeterRegistry registry;
+
+    // droppable event names as they appear in a Socket.IO packet, matched without decoding
+    private byte[][] droppable;
+    private final Set<OutboundGuard> slow = ConcurrentHashMap.newKeySet();
+
+    private Counter droppedEvents;
+    private Counter coalescedEvents;
+    private Counter budgetDisconnects;
+    private Counter stallDisconnects;
+    private Counter slowEpisodes;
+
+    @PostConstruct
+    void init() {
+        droppable = config.droppableEvents().stream()
+            .map(e -> e.trim().getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
+        droppedEvents = Counter.builder("scigal.socket.slow.events")
+            .description("Events not delivered to slow consumers")
+            .tag("action", "dropped")
+            .register(registry);
+        coalescedEvents = Counter.builder("scigal.socket.slow.events")
+            .description("Events not delivered to slow consumers")
+            .tag("action", "coalesced")
+            .register(registry);
+        budgetDisconnects = Counter.builder("scigal.socket.slow.disconnects")
+            .description("Slow consumers disconnected")
+            .tag("reason", "budget")
+            .register(registry);
+        stallDisconnects = Counter.builder("scigal.socket.slow.disconnects")
+            .description("Slow consumers disconnected")
+            .tag("reason", "stalled")
+            .register(registry);
+        slowEpisodes = Counter.builder("scigal.socket.slow.episodes")
+            .description("Times a client went above the high water mark")
+            .register(registry);
+        Gauge.builder("scigal.socket.slow.clients", slow, Set::size)
+            .description("Clients currently above the high water mark")
+            .register(registry);
+    }
+
+    void install(Channel ch) {
+        ch.config().setWriteBufferWaterMark(new WriteBufferWaterMark(config.lowWaterMark(), config.highWaterMark()));
+        // above the HTTP encoder: the websocket frame encoder is inserted below it on upgrade
+        ch.pipeline().addAfter(SocketIOChannelInitializer.HTTP_ENCODER, "outboundGuard", new OutboundGuard(this));
+    }
+
+    /**
+     * Clients currently above the high water mark, largest backlog first.
+     */
+    public List<SlowConsumer> getSlowConsumers() {
+        long now = System.currentTimeMillis();
+        List<SlowConsumer> out = new ArrayList<>(slow.size());
+        for (OutboundGuard g : slow) {
+            long since = g.unwritableSince;
+            out.add(new SlowConsumer(g.sessionId, g.userId, g.remoteAddress, g.pendingEvents, g.pendingBytes,
+                g.dropped, g.coalesced, since == 0 ? 0 : now - since));
+        }
+        out.sort(Comparator.comparingLong(SlowConsumer::pendingBytes).reversed());
+        return out;
+    }
+
+    public int getSlowCount() {
+        return slow.size();
+    }
+
+    /**
+     * Index of the event carried by a Socket.IO event packet among the droppable events,
+     * -1 for any other packet or event.
+     */
+    int droppableEvent(ByteBuf content) {
+        int name = SocketPackets.eventNameOffset(content);
+        if (name < 0) return -1;
+        for (int e = 0; e < droppable.length; e++) {
+            if (SocketPackets.nameIs(content, name, droppable[e])) return e;
+        }
+        return -1;
+    }
+
+    SlowConsumerPolicy policy() {
+        return config.policy();
+    }
+
+    int maxPendingEvents() {
+        return config.maxPendingEvents();
+    }
+
+    long maxPendingBytes() {
+        return config.maxPendingBytes();
+    }
+
+    long maxStallMs() {
+        return config.maxStallMs();
+    }
+
+    void slowStarted(OutboundGuard guard) {
+        slow.add(guard);
+        slowEpisodes.increment();
+    }
+
+    void slowEnded(OutboundGuard guard) {
+        slow.remove(guard);
+    }
+
+    void onDropped() {
+        droppedEvents.increment();
+    }
+
+    void onCoalesced() {
+        coalescedEvents.increment();
+    }
+
+    void onDisconnect(OutboundGuard guard, String reason) {
+        (REASON_STALLED.equals(reason) ? stallDisconnects : budgetDisconnects).increment();
+        LOG.warnf("disconnecting slow consumer session=%s user=%s remote=%s: %s (%d events / %d bytes pending)",
+            guard.sessionId, guard.userId, guard.remoteAddress, reason, guard.pendingEvents, guard.pendingBytes);
+    }
+}
@@ -9,8 +9,17 @@ import io.quarkus.runtime.StartupEvent;
 import org.jboss.logging.Logger;
 
 import com.corundumstudio.socketio.Configuration;
+import com.corundumstudio.socketio.SocketIOChannelInitializer;
 import com.corundumstudio.socketio.SocketIOServer;
 import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketConfig;
+import io.netty.channel.Channel;
+import io.netty.channel.epoll.Epoll;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import com.dim.config.WebSocketConfig;
 import com.dim.config.KubernetesPortDetector;
@@ -19,10 +28,24 @@ import com.dim.service.CallService;
 import com.dim.service.SessionService;
 import com.dim.service.UserProfileService;
 import com.dim.service.RoomPersistenceService;
+import com.dim.service.RoomHistoryService;
+import com.dim.service.PersistenceDispatcher;
+import com.dim.model.Message;
+import com.dim.model.SignalMessage;
+import com.dim.model.CallMessage;
+import com.dim.model.ProfileInvalidation;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.Json;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @ApplicationScoped
 public class SocketIOServerWrapper {
@@ -36,7 +59,7 @@ public class SocketIOServerWrapper {
     KubernetesPortDetector k8sDetector;
 
     @Inject
-    PubSubService pubSubService;
+    ClusterBus bus;
 
     @Inject
     MessageService messageService;
@@ -53,8 +76,47 @@ public class SocketIOServerWrapper {
     @Inject
     RoomPersistenceService roomPersistenceService;
 
+    @Inject
+    RoomHistoryService roomHistoryService;
+
+    @Inject
+    PresenceAggregator presenceAggregator;
+
+    @Inject
+    PersistenceDispatcher persistenceDispatcher;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    SlowConsumerMonitor slowConsumerMonitor;
+
+    @Inject
+    RateLimiter rateLimiter;
+
+    @Inject
+    SessionRegistry sessionRegistry;
+
     private SocketIOServer server;
     private final ObjectMapper mapper = new ObjectMapper();
+    // rooms joined by each local session, drives the per-room Redis subscriptions
+    private final Map<UUID, Set<String>> clientRooms = new ConcurrentHashMap<>();
+    // local members per room, for the room-size distribution
+    private final Map<String, AtomicInteger> roomSizes = new ConcurrentHashMap<>();
+    private final AtomicInteger connectedClients = new AtomicInteger();
+
+    // one set per event type, created once: recording on the event loop does not allocate
+    private record EventMeters(Timer handler, Counter failures) {}
+
+    private EventMeters connectMeters;
+    private EventMeters disconnectMeters;
+    private EventMeters joinMeters;
+    private EventMeters leaveMeters;
+    private EventMeters messageMeters;
+    private EventMeters signalMeters;
+    private EventMeters callMeters;
+    private EventMeters historyMeters;
+    private DistributionSummary roomSize;
 
     void onStart(@Observes StartupEvent ev) {
         // La méthode start() est déjà appelée par @PostConstruct
@@ -75,59 +137,86 @@ public class SocketIOServerWrapper {
         int port = k8sDetector.detectWebSocketPort().orElse(wsConfig.port());
 
         LOG.infof("Starting Socket.IO server on %s:%d...", host, port);
+        registerMeters();
         try {
             Configuration config = new Configuration();
             config.setHostname(host);
             config.setPort(port);
+            applyTransportTuning(config);
             server = new SocketIOServer(config);
+            // tampon sortant borné (OutboundGuard) et limitation de débit (RateLimitHandler) par client
+            server.setPipelineFactory(new SocketIOChannelInitializer() {
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    super.initChannel(ch);
+                    slowConsumerMonitor.install(ch);
+                    rateLimiter.install(ch);
+                }
+            });
 
             // connection events
             server.addConnectListener(client -> {
                 LOG.infof("Socket.IO client connected: %s", client.getSessionId());
+                long start = System.nanoTime();
+                connectedClients.incrementAndGet();
                 try {
                     client.sendEvent("connected", client.getSessionId().toString());
+                    // session -> instance, pour le routage des signaux ciblés
+                    sessionRegistry.register(client.getSessionId());
                     
                     // Récupérer userId depuis les paramètres de connexion
                     String userId = client.getHandshakeData().getSingleUrlParam("userId");
                     if (userId != null) {
-                        // Marquer l'utilisateur en ligne (Redis)
+                        // Marquer l'utilisateur en ligne sur cette instance (Redis, renouvelé par PresenceAggregator)
                         sessionService.setUserOnline(userId);
-                        // Mettre à jour le statut en base (MongoDB)
+                        // Statut en base: seul le dernier par utilisateur est écrit, par bulkWrite périodique
                         userProfileService.updateStatus(userId, "online");
-                        // Broadcast présence aux autres clients
-                        server.getBroadcastOperations().sendEvent("presence", 
-                            new JsonObject()
-                                .put("userId", userId)
-                                .put("status", "online")
-                                .encode());
+                        // Présence: diff agrégé par room (voir PresenceAggregator)
+                        presenceAggregator.connected(userId, client.getSessionId());
                     }
                 } catch (Exception e) {
+                    connectMeters.failures().increment();
                     LOG.debug("Error during connect handling", e);
+                } finally {
+                    connectMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
             server.addDisconnectListener(client -> {
                 LOG.infof("Socket.IO client disconnected: %s", client.getSessionId());
+                long start = System.nanoTime();
+                connectedClients.decrementAndGet();
+                rateLimiter.disconnected(client);
+                sessionRegistry.unregister(client.getSessionId());
+                Set<String> joined = clientRooms.remove(client.getSessionId());
+                if (joined != null) {
+                    joined.forEach(this::releaseRoom);
+                }
                 try {
                     String userId = client.getHandshakeData().getSingleUrlParam("userId");
                     if (userId != null) {
-                        // Marquer l'utilisateur hors ligne
-                        sessionService.setUserOffline(userId);
-                        userProfileService.updateStatus(userId, "offline");
-                        // Broadcast présence aux autres clients
-                        server.getBroadcastOperations().sendEvent("presence",
-                            new JsonObject()
-                                .put("userId", userId)
-                                .put("status", "offline")
-                                .encode());
+                        // Présence: offline dans les rooms où c'était sa dernière session, annulé si reconnexion dans la fenêtre
+                        if (presenceAggregator.disconnected(userId, client.getSessionId(), joined)) {
+                            // dernière session locale: cette instance quitte la présence (Redis); statut en base
+                            // différé, seulement si aucune autre instance ni session revenue entre-temps ne l'a
+                            sessionService.setUserOffline(userId).onSuccess(offline -> {
+                                if (offline && !presenceAggregator.isConnected(userId)) {
+                                    userProfileService.updateStatus(userId, "offline");
+                                }
+                            });
+                        }
                     }
                 } catch (Exception e) {
+                    disconnectMeters.failures().increment();
                     LOG.debug("Error during disconnect handling", e);
+                } finally {
+                    disconnectMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
             // join room
             server.addEventListener("join", String.class, (client, data, ackSender) -> {
+                long start = System.nanoTime();
                 try {
                     JsonNode node = mapper.readTree(data);
                     String room = node.has("room") ? node.get("room").asText() : null;
@@ -135,18 +224,32 @@ public class SocketIOServerWrapper {
                     if (room != null) {
                         client.joinRoom(room);
                         LOG.infof("client %s joined room %s", client.getSessionId(), room);
-                        // Persister le membre dans la room (MongoDB)
+                        // premier membre local: abonnement au canal Redis de la room
+                        if (clientRooms.computeIfAbsent(client.getSessionId(), id -> ConcurrentHashMap.newKeySet()).add(room)) {
+                            retainRoom(room);
+                            // présence: en ligne dans la room à la première session locale de l'utilisateur
+                            if (userId != null) {
+                                presenceAggregator.joined(userId, room);
+                            }
+                        }
+                        // rejouer l'historique récent (L1 mémoire > Redis > MongoDB)
+                        roomHistoryService.replay(room, history -> client.sendEvent("history", historyEvent(room, history)));
+                        // Persister le membre dans la room (MongoDB, écriture différée)
                         if (userId != null) {
                             roomPersistenceService.addMember(room, userId);
                         }
                     }
                 } catch (Exception e) {
+                    joinMeters.failures().increment();
                     LOG.warn("invalid join payload", e);
+                } finally {
+                    joinMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
             // leave room
             server.addEventListener("leave", String.class, (client, data, ackSender) -> {
+                long start = System.nanoTime();
                 try {
                     JsonNode node = mapper.readTree(data);
                     String room = node.has("room") ? node.get("room").asText() : null;
@@ -154,96 +257,147 @@ public class SocketIOServerWrapper {
                     if (room != null) {
                         client.leaveRoom(room);
                         LOG.infof("client %s left room %s", client.getSessionId(), room);
+                        Set<String> joined = clientRooms.get(client.getSessionId());
+                        if (joined != null && joined.remove(room)) {
+                            releaseRoom(room);
+                            if (userId != null) {
+                                presenceAggregator.left(userId, room);
+                            }
+                        }
                         // Retirer le membre de la room (MongoDB)
                         if (userId != null) {
                             roomPersistenceService.removeMember(room, userId);
                         }
                     }
                 } catch (Exception e) {
+                    leaveMeters.failures().increment();
                     LOG.warn("invalid leave payload", e);
+                } finally {
+                    leaveMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
-            // chat/message
-            server.addEventListener("message", String.class, (client, data, ackSender) -> {
+            // older history, one page per request: {"room":..., "before":cursor?, "limit":n?}
+            server.addEventListener("history", String.class, (client, data, ackSender) -> {
+                if (!rateLimiter.allow(client, RateLimiter.HISTORY, ackSender)) return;
+                long start = System.nanoTime();
                 try {
                     JsonNode node = mapper.readTree(data);
                     String room = node.has("room") ? node.get("room").asText() : null;
-                    String from = node.has("from") ? node.get("from").asText() : null;
-                    String payload = node.has("payload") ? node.get("payload").asText() : node.toString();
-                    // persist message
+                    if (room != null) {
+                        String before = node.hasNonNull("before") ? node.get("before").asText() : null;
+                        Integer limit = node.has("limit") ? node.get("limit").asInt() : null;
+                        // MongoDB read off the event loop; answered as an ack, else as a 'history' event
+                        roomHistoryService.pageAsync(room, before, limit).onComplete(ar -> {
+                            String reply;
+                            if (ar.succeeded()) {
+                                reply = Json.encode(ar.result());
+                            } else {
+                                historyMeters.failures().increment();
+                                reply = ar.cause() instanceof IllegalArgumentException
+                                    ? "{\"error\":\"invalid_cursor\"}" : "{\"error\":\"unavailable\"}";
+                                LOG.debugf(ar.cause(), "history page failed for room %s", room);
+                            }
+                            if (ackSender.isAckRequested()) {
+                                ackSender.sendAckData(reply);
+                            } else if (ar.succeeded()) {
+                                client.sendEvent("history", reply);
+                            }
+                        });
+                    }
+                } catch (Exception e) {
+                    historyMeters.failures().increment();
+                    LOG.warn("invalid history payload", e);
+                } finally {
+                    historyMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+
+            // chat/message
+            server.addEventListener("message", String.class, (client, data, ackSender) -> {
+                if (!rateLimiter.allow(client, RateLimiter.MESSAGE, ackSender)) return;
+                long start = System.nanoTime();
+                try {
+                    // parsed once: the envelope is shared by persistence, the Redis bus and the fan-out
+                    Message msg = EnvelopeCodec.fromClient(Message.TYPE, data, bus.getInstanceId());
+                    String room = msg.getRoom();
+                    String payload = msg.getPayload();
+                    // persist message (enqueue only, written in batches by MessageService)
                     try {
-                        messageService.saveMessage(room, from, payload);
+                        messageService.saveMessage(room, msg.getFrom(), payload);
                     } catch (Exception ex) {
                         LOG.debug("message persistence failed (best-effort)", ex);
                     }
                     // publish to other instances
                     try {
-                        pubSubService.publish(new JsonObject(node.toString()));
+                        bus.publish(msg);
                     } catch (Exception ex) {
-                        LOG.debug("redis publish failed (best-effort)", ex);
+                        LOG.debug("bus publish failed (best-effort)", ex);
                     }
+                    roomHistoryService.record(room, msg.getFrom(), payload);
                     // broadcast locally
                     if (room != null) {
+                        recordFanout(room);
                         server.getRoomOperations(room).sendEvent("message", payload);
                     } else {
                         server.getBroadcastOperations().sendEvent("message", payload);
                     }
                 } catch (Exception e) {
+                    messageMeters.failures().increment();
                     LOG.warn("invalid message payload", e);
+                } finally {
+                    messageMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
             // WebRTC signalling (offer/answer/ice)
             server.addEventListener("signal", String.class, (client, data, ackSender) -> {
+                if (!rateLimiter.allow(client, RateLimiter.SIGNAL, ackSender)) return;
+                long start = System.nanoTime();
                 try {
-                    JsonNode node = mapper.readTree(data);
-                    String target = node.has("target") ? node.get("target").asText() : null;
-                    String room = node.has("room") ? node.get("room").asText() : null;
-                    // forward to target if provided
-                    if (target != null) {
+                    SignalMessage signal = (SignalMessage) EnvelopeCodec.fromClient(SignalMessage.TYPE, data, bus.getInstanceId());
+                    if (signal.getTarget() != null) {
+                        // point-to-point: delivered here, or sent to the owning instance only
+                        forwardSignal(signal);
+                    } else {
+                        // room, else everyone
+                        routeSignal(signal);
+                        // also publish to the other instances
                         try {
-                            java.util.UUID targetId = java.util.UUID.fromString(target);
-                            SocketIOClient targetClient = server.getClient(targetId);
-                            if (targetClient != null) {
-                                targetClient.sendEvent("signal", node.toString());
-                            }
-                        } catch (IllegalArgumentException iae) {
-                            LOG.debug("invalid target id", iae);
+                            bus.publish(signal);
+                        } catch (Exception ex) {
+                            LOG.debug("bus publish for signal failed", ex);
                         }
-                    } else if (room != null) {
-                        server.getRoomOperations(room).sendEvent("signal", node.toString());
-                    } else {
-                        server.getBroadcastOperations().sendEvent("signal", node.toString());
-                    }
-                    // also publish to Redis
-                    try {
-                        pubSubService.publish(new JsonObject(node.toString()));
-                    } catch (Exception ex) {
-                        LOG.debug("redis publish for signal failed", ex);
                     }
                 } catch (Exception e) {
+                    signalMeters.failures().increment();
                     LOG.warn("invalid signal payload", e);
+                } finally {
+                    signalMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
             // call metadata event
             server.addEventListener("call_metadata", String.class, (client, data, ackSender) -> {
+                if (!rateLimiter.allow(client, RateLimiter.CALL, ackSender)) return;
+                long start = System.nanoTime();
                 try {
-                    JsonNode node = mapper.readTree(data);
-                    String callId = node.has("callId") ? node.get("callId").asText() : null;
-                    String from = node.has("from") ? node.get("from").asText() : null;
-                    String to = node.has("to") ? node.get("to").asText() : null;
-                    // store metadata
-                    callService.saveCallMetadata(callId, from, to, node);
-                    // publish to redis
+                    CallMessage call = (CallMessage) EnvelopeCodec.fromClient(CallMessage.TYPE, data, bus.getInstanceId());
+                    // store metadata (off the event loop, ordered per call)
+                    String callKey = call.getCallId() != null ? call.getCallId() : call.getRoom();
+                    persistenceDispatcher.dispatch(callKey,
+                        () -> callService.saveCallMetadata(call.getCallId(), call.getFrom(), call.getTo(), call.getBody().getMap()));
+                    // publish to the other instances
                     try {
-                        pubSubService.publish(new JsonObject(node.toString()));
+                        bus.publish(call);
                     } catch (Exception ex) {
-                        LOG.debug("redis publish for call_metadata failed", ex);
+                        LOG.debug("bus publish for call_metadata failed", ex);
                     }
                 } catch (Exception e) {
+                    callMeters.failures().increment();
                     LOG.warn("invalid call_metadata payload", e);
+                } finally {
+                    callMeters.handler().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             });
 
@@ -254,6 +408,88 @@ public class SocketIOServerWrapper {
         }
     }
 
+    /**
+     * Handler timers per event type (their count is the event count), failures, connected clients,
+     * and the number of local members a room message is fanned out to.
+     */
+    void registerMeters() {
+        connectMeters = eventMeters("connect");
+        disconnectMeters = eventMeters("disconnect");
+        joinMeters = eventMeters("join");
+        leaveMeters = eventMeters("leave");
+        messageMeters = eventMeters("message");
+        signalMeters = eventMeters("signal");
+        callMeters = eventMeters("call_metadata");
+        historyMeters = eventMeters("history");
+        roomSize = DistributionSummary.builder("scigal.socket.room.size")
+            .description("Local members of the room a message is fanned out to")
+            .publishPercentileHistogram()
+            .register(registry);
+        Gauge.builder("scigal.socket.clients", connectedClients, AtomicInteger::get)
+            .description("Connected Socket.IO clients")
+            .register(registry);
+        Gauge.builder("scigal.socket.rooms", roomSizes, Map::size)
+            .description("Rooms with at least one local member")
+            .register(registry);
+    }
+
+    private EventMeters eventMeters(String event) {
+        return new EventMeters(
+            Timer.builder("scigal.socket.handler")
+                .description("Socket.IO event handler duration")
+                .tag("event", event)
+                .publishPercentileHistogram()
+                .register(registry),
+            Counter.builder("scigal.socket.handler.failures")
+                .description("Socket.IO events whose handler failed")
+                .tag("event", event)
+                .register(registry));
+    }
+
+    private void retainRoom(String room) {
+        bus.retainRoom(room);
+        roomSizes.computeIfAbsent(room, r -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void releaseRoom(String room) {
+        bus.releaseRoom(room);
+        roomSizes.computeIfPresent(room, (r, members) -> members.decrementAndGet() > 0 ? members : null);
+    }
+
+    private void recordFanout(String room) {
+        AtomicInteger members = roomSizes.get(room);
+        roomSize.record(members == null ? 0 : members.get());
+    }
+
+    /**
+     * Réglages transport (threads, epoll, buffers, TCP, ping) issus de WebSocketConfig.
+     */
+    private void applyTransportTuning(Configuration config) {
+        boolean epoll = wsConfig.useEpoll() && Epoll.isAvailable();
+        if (wsConfig.useEpoll() && !epoll) {
+            LOG.infof("epoll transport unavailable, using NIO (%s)", Epoll.unavailabilityCause());
+        }
+        config.setUseLinuxNativeEpoll(epoll);
+        config.setBossThreads(wsConfig.bossThreads());
+        config.setWorkerThreads(wsConfig.workerThreads());
+        config.setPreferDirectBuffer(wsConfig.preferDirectBuffer());
+        config.setMaxFramePayloadLength(wsConfig.maxFramePayloadLength());
+        config.setMaxHttpContentLength(wsConfig.maxHttpContentLength());
+        config.setPingInterval(wsConfig.pingInterval());
+        config.setPingTimeout(wsConfig.pingTimeout());
+
+        SocketConfig socket = config.getSocketConfig();
+        socket.setTcpNoDelay(wsConfig.tcpNoDelay());
+        socket.setAcceptBackLog(wsConfig.acceptBacklog());
+        socket.setTcpKeepAlive(wsConfig.tcpKeepAlive());
+        socket.setReuseAddress(wsConfig.reuseAddress());
+        config.setSocketConfig(socket);
+
+        LOG.infof("Socket.IO transport: %s, boss=%d, worker=%d, directBuffers=%b, tcpNoDelay=%b, backlog=%d",
+            epoll ? "epoll" : "nio", wsConfig.bossThreads(), wsConfig.workerThreads(),
+            wsConfig.preferDirectBuffer(), wsConfig.tcpNoDelay(), wsConfig.acceptBacklog());
+    }
+
     @PreDestroy
     void stop() {
         try {
@@ -266,53 +502,104 @@ public class SocketIOServerWrapper {
     }
 
     /**
-     * Called by the PubSubService when a message arrives from Redis.
+     * Called by the {@link ClusterBus} when an event arrives from another instance.
      */
-    public void onPubSub(JsonObject json) {
+    public void onPubSub(Message msg) {
         try {
-            String type = json.getString("type", "message");
-            switch (type) {
-                case "signal":
-                    String target = json.getString("target", null);
-                    String room = json.getString("room", null);
-                    if (target != null) {
-                        try {
-                            java.util.UUID targetId = java.util.UUID.fromString(target);
-                            SocketIOClient targetClient = server.getClient(targetId);
-                            if (targetClient != null) {
-                                targetClient.sendEvent("signal", json.encode());
-                            }
-                        } catch (IllegalArgumentException ignored) {}
-                    } else if (room != null) {
-                        server.getRoomOperations(room).sendEvent("signal", json.encode());
-                    } else {
-                        server.getBroadcastOperations().sendEvent("signal", json.encode());
-                    }
-                    break;
-                case "call_metadata":
-                    String callRoom = json.getString("room", null);
-                    if (callRoom != null) {
-                        server.getRoomOperations(callRoom).sendEvent("call_metadata", json.encode());
-                    } else {
-                        server.getBroadcastOperations().sendEvent("call_metadata", json.encode());
-                    }
-                    break;
-                case "message":
-                default:
-                    String payload = json.getString("payload", json.getString("message", ""));
-                    String msgRoom = json.getString("room", null);
-                    if (msgRoom != null) {
-                        server.getRoomOperations(msgRoom).sendEvent("message", payload);
-                    } else {
-                        server.getBroadcastOperations().sendEvent("message", payload);
-                    }
-                    break;
+            if (msg instanceof SignalMessage signal) {
+                routeSignal(signal);
+            } else if (msg instanceof CallMessage call) {
+                String callRoom = call.getRoom();
+                if (callRoom != null) {
+                    server.getRoomOperations(callRoom).sendEvent("call_metadata", call.clientWire());
+                } else {
+                    server.getBroadcastOperations().sendEvent("call_metadata", call.clientWire());
+                }
+            } else if (msg instanceof ProfileInvalidation invalidation) {
+                // cache maintenance, nothing to deliver
+                invalidation.getUserIds().forEach(userProfileService::evict);
+            } else {
+                String payload = msg.getPayload();
+                String msgRoom = msg.getRoom();
+                roomHistoryService.recordRemote(msgRoom, msg.getFrom(), payload);
+                if (msgRoom != null) {
+                    recordFanout(msgRoom);
+                    server.getRoomOperations(msgRoom).sendEvent("message", payload);
+                } else {
+                    server.getBroadcastOperations().sendEvent("message", payload);
+                }
             }
         } catch (Exception e) {
             LOG.debug("failed to forward pubsub message to socket.io clients", e);
         }
     }
 
+    /**
+     * Deliver a targeted signal from a local client: directly when the target session is local, else
+     * on the private channel of the instance owning it. Unregistered targets fall back to the global
+     * channel, where every instance looks the session up.
+     */
+    private void forwardSignal(SignalMessage signal) {
+        UUID target;
+        try {
+            target = UUID.fromString(signal.getTarget());
+        } catch (IllegalArgumentException iae) {
+            LOG.debug("invalid target id", iae);
+            return;
+        }
+        SocketIOClient targetClient = server.getClient(target);
+        if (targetClient != null) {
+            targetClient.sendEvent("signal", signal.clientWire());
+            return;
+        }
+        if (!sessionRegistry.isEnabled() || !bus.hasPeers()) {
+            bus.publish(signal);
+            return;
+        }
+        sessionRegistry.ownerOf(signal.getTarget(), owner -> {
+            if (owner == null) {
+                bus.publish(signal);
+            } else if (!owner.equals(bus.getInstanceId())) {
+                bus.publishTo(owner, signal);
+            }
+        });
+    }
+
+    /**
+     * Deliver a signal to its target session if any, else to its room, else to everyone.
+     */
+    private void routeSignal(SignalMessage signal) {
+        String target = signal.getTarget();
+        String room = signal.getRoom();
+        if (target != null) {
+            try {
+                SocketIOClient targetClient = server.getClient(UUID.fromString(target));
+                if (targetClient != null) {
+                    targetClient.sendEvent("signal", signal.clientWire());
+                }
+            } catch (IllegalArgumentException iae) {
+                LOG.debug("invalid target id", iae);
+            }
+        } else if (room != null) {
+            server.getRoomOperations(room).sendEvent("signal", signal.clientWire());
+        } else {
+            server.getBroadcastOperations().sendEvent("signal", signal.clientWire());
+        }
+    }
+
+    /**
+     * {"room": ..., "messages": [...]} built from already serialized history entries.
+     */
+    private static String historyEvent(String room, List<String> history) {
+        StringBuilder sb = new StringBuilder(64 + history.size() * 128);
+        sb.append("{\"room\":").append(Json.encode(room)).append(",\"messages\":[");
+        for (int i = 0; i < history.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(history.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
     /**
      * Broadcast plain text to all connected Socket.IO clients.
      */
@@ -324,6 +611,39 @@ public class SocketIOServerWrapper {
         }
     }
 
+    /**
+     * Send an arbitrary event to the local members of a room.
+     */
+    public void sendRoomEvent(String room, String event, String data) {
+        try {
+            server.getRoomOperations(room).sendEvent(event, data);
+        } catch (Exception e) {
+            LOG.debugf(e, "failed to send %s to room %s", event, room);
+        }
+    }
+
+    /**
+     * Broadcast bytes to all connected clients as a binary attachment ("binary" event).
+     */
+    public void broadcastBinary(byte[] data) {
+        try {
+            server.getBroadcastOperations().sendEvent("binary", data);
+        } catch (Exception e) {
+            LOG.debug("failed to broadcast binary to socket.io clients", e);
+        }
+    }
+
+    /**
+     * Broadcast bytes to a specific room as a binary attachment ("binary" event).
+     */
+    public void broadcastBinaryToRoom(String room, byte[] data) {
+        try {
+            server.getRoomOperations(room).sendEvent("binary", data);
+        } catch (Exception e) {
+            LOG.debug("failed to broadcast binary to room to socket.io clients", e);
+        }
+    }
+
     /**
      * Broadcast text to a specific room.
      */
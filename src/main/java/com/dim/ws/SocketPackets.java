@@ -0,0 +1,113 @@
+package com.dim.ws;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free reads of a Socket.IO v2 packet header in a websocket frame, without decoding it:
+ * {@code 4} (Engine.IO message), packet type ({@code 2} event, {@code 5} binary event), attachment count
+ * followed by {@code -} for binary events, optional {@code /namespace,}, optional ack id, then the
+ * JSON array starting with the event name.
+ */
+final class SocketPackets {
+
+    private SocketPackets() {}
+
+    /**
+     * Offset of the first character of the event name, -1 if the frame is not an event packet.
+     */
+    static int eventNameOffset(ByteBuf content) {
+        int i = afterNamespace(content);
+        if (i < 0) return -1;
+        int end = content.writerIndex();
+        while (i < end && isDigit(content.getByte(i))) i++; // ack id
+        if (end - i < 2 || content.getByte(i) != '[' || content.getByte(i + 1) != '"') return -1;
+        return i + 2;
+    }
+
+    /**
+     * True when the event name at {@code offset} is exactly {@code name}.
+     */
+    static boolean nameIs(ByteBuf content, int offset, byte[] name) {
+        int end = offset + name.length;
+        if (end >= content.writerIndex() || content.getByte(end) != '"') return false;
+        for (int k = 0; k < name.length; k++) {
+            if (content.getByte(offset + k) != name[k]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ack id requested by an event packet, -1 when none.
+     */
+    static long ackId(ByteBuf content) {
+        int i = afterNamespace(content);
+        if (i < 0) return -1;
+        int end = content.writerIndex();
+        if (i >= end || !isDigit(content.getByte(i))) return -1;
+        long id = 0;
+        while (i < end && isDigit(content.getByte(i))) {
+            id = id * 10 + (content.getByte(i++) - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Namespace prefix of the packet including its trailing comma ({@code /chat,}), empty for the default one.
+     */
+    static String namespace(ByteBuf content) {
+        int start = headerEnd(content);
+        if (start < 0 || start >= content.writerIndex() || content.getByte(start) != '/') return "";
+        int end = afterNamespace(content);
+        return content.toString(start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Number of attachment frames announced by a binary event packet ({@code 451-[...]}), 0 otherwise.
+     */
+    static int attachments(ByteBuf content) {
+        int i = content.readerIndex();
+        int end = content.writerIndex();
+        if (end - i < 3 || content.getByte(i) != '4' || content.getByte(i + 1) != '5') return 0;
+        int n = 0;
+        for (i += 2; i < end; i++) {
+            byte b = content.getByte(i);
+            if (b == '-') return n;
+            if (!isDigit(b)) return 0;
+            n = n * 10 + (b - '0');
+        }
+        return 0;
+    }
+
+    /**
+     * Offset after the packet type and attachment count, -1 if not an event packet.
+     */
+    private static int headerEnd(ByteBuf content) {
+        int i = content.readerIndex();
+        int end = content.writerIndex();
+        if (end - i < 4 || content.getByte(i) != '4') return -1;
+        byte type = content.getByte(i + 1);
+        if (type == '2') return i + 2;
+        if (type != '5') return -1;
+        for (i += 2; i < end; i++) {
+            if (content.getByte(i) == '-') return i + 1;
+        }
+        return -1;
+    }
+
+    private static int afterNamespace(ByteBuf content) {
+        int i = headerEnd(content);
+        if (i < 0) return -1;
+        int end = content.writerIndex();
+        if (i < end && content.getByte(i) == '/') {
+            while (i < end && content.getByte(i) != ',') i++;
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,56 @@
+package com.dim.ws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One token bucket per rate-limited event type, lock-free.
+ *
+ * Implemented as GCRA: each slot holds the theoretical arrival time of the next conforming event, an
+ * event conforms when it is not earlier than that time minus the burst tolerance. Acquiring a token is
+ * a read and a CAS, nothing is allocated.
+ */
+final class TokenBuckets {
+
+    private final AtomicLongArray tat;
+    // last rejection notice sent per type, to throttle "error" events
+    private final AtomicLongArray notified;
+    private final long[] intervalNanos;
+    private final long[] toleranceNanos;
+    // sessions sharing these buckets (USER key)
+    final AtomicInteger refs = new AtomicInteger(1);
+
+    /**
+     * @param intervalNanos emission interval per type (1s / rate)
+     * @param toleranceNanos burst tolerance per type (interval * (burst - 1))
+     */
+    TokenBuckets(long[] intervalNanos, long[] toleranceNanos) {
+        this.intervalNanos = intervalNanos;
+        this.toleranceNanos = toleranceNanos;
+        this.tat = new AtomicLongArray(intervalNanos.length);
+        this.notified = new AtomicLongArray(intervalNanos.length);
+    }
+
+    /**
+     * @return 0 if the event conforms, else the nanoseconds until it would
+     */
+    long tryAcquire(int type, long now) {
+        long interval = intervalNanos[type];
+        while (true) {
+            long current = tat.get(type);
+            long base = current == 0 ? now : Math.max(current, now);
+            long wait = base - toleranceNanos[type] - now;
+            if (wait > 0) return wait;
+            if (tat.compareAndSet(type, current, base + interval)) return 0;
+        }
+    }
+
+    /**
+     * True at most once per {@code intervalNanos} and type, for the caller that should tell the client.
+     */
+    boolean shouldNotify(int type, long now, long intervalNanos) {
+        long last = notified.get(type);
+        if (last != 0 && now - last < intervalNanos) return false;
+        return notified.compareAndSet(type, last, now);
+    }
+}
@@ -0,0 +1,66 @@
+package com.dim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.json.JsonObject;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BSON Document construction for persisted messages and call metadata, including the former
+ * Document.parse(JsonNode.toString()) round trip for call metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentBuildBenchmark {
+
+    private static final String CALL = "{\"callId\":\"c-1\",\"from\":\"user-1\",\"to\":\"user-2\",\"room\":\"room-42\","
+        + "\"media\":{\"audio\":true,\"video\":true},\"codecs\":[\"opus\",\"vp8\"],\"startedAt\":1718000000000}";
+
+    private Map<String, Object> callMetadata;
+    private JsonNode callNode;
+
+    @Setup
+    public void setup() throws Exception {
+        callMetadata = new JsonObject(CALL).getMap();
+        callNode = new ObjectMapper().readTree(CALL);
+    }
+
+    @Benchmark
+    public Document messageDocument() {
+        return MessageService.toDocument("room-42", "user-1234", "hello everyone, the build is green again");
+    }
+
+    @Benchmark
+    public Document callDocument() {
+        return CallService.toDocument("c-1", "user-1", "user-2", callMetadata);
+    }
+
+    @Benchmark
+    public Document callDocumentLegacyParse() {
+        Document doc = new Document();
+        doc.append("callId", "c-1");
+        doc.append("from", "user-1");
+        doc.append("to", "user-2");
+        doc.append("metadata", Document.parse(callNode.toString()));
+        doc.append("timestamp", Instant.now().toString());
+        return doc;
+    }
+}
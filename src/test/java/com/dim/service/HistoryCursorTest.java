@@ -0,0 +1,71 @@
+package com.dim.service;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryCursorTest {
+
+    private static final ObjectId ID = new ObjectId("65f000000000000000000010");
+    private static final Date TS = new Date(1_700_000_000_123L);
+
+    @Test
+    void roundTrip() {
+        HistoryCursor cursor = new HistoryCursor(TS, ID);
+        assertEquals("1700000000123-65f000000000000000000010", cursor.format());
+        assertEquals(cursor, HistoryCursor.parse(cursor.format()));
+    }
+
+    @Test
+    void ofReadsLegacyStringTimestamps() {
+        Document legacy = new Document("_id", ID).append("timestamp", "2023-11-14T22:13:20.123Z");
+        assertEquals(new HistoryCursor(TS, ID), HistoryCursor.of(legacy));
+    }
+
+    @Test
+    void rejectsForeignCursors() {
+        for (String bad : List.of("", "-" + ID.toHexString(), "1700000000123", "1700000000123-", "1700000000123-xyz",
+                "abc-" + ID.toHexString(), "99999999999999999999-" + ID.toHexString())) {
+            assertThrows(IllegalArgumentException.class, () -> HistoryCursor.parse(bad), bad);
+        }
+    }
+
+    @Test
+    void flatFilterExcludesTheCursorAndItsTies() {
+        BsonDocument filter = new HistoryCursor(TS, ID).olderThan("r1").toBsonDocument();
+        BsonDocument expected = BsonDocument.parse("{$and: ["
+            + "{room: 'r1'},"
+            + "{timestamp: {$lte: {$date: 1700000000123}}},"
+            + "{$nor: [{$and: [{timestamp: {$date: 1700000000123}}, {_id: {$gte: {$oid: '65f000000000000000000010'}}}]}]}"
+            + "]}");
+        assertEquals(expected, filter);
+    }
+
+    @Test
+    void bucketedPagesSplitTiesById() {
+        // five messages sharing one timestamp, in one bucket
+        ObjectId[] ids = new ObjectId[5];
+        List<Document> messages = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new ObjectId(String.format("65f0000000000000000000%02x", i));
+            messages.add(new Document("_id", ids[i]).append("timestamp", TS));
+        }
+        Document bucket = new Document("start", new Date(0)).append("messages", messages)
+            .append("last", new Document("timestamp", TS).append("_id", ids[4]));
+
+        List<Document> first = MessageBuckets.newestFirst(List.of(bucket).iterator(), null, 2, 3_600_000L);
+        assertEquals(List.of(ids[4], ids[3]), first.stream().map(m -> m.getObjectId("_id")).toList());
+
+        HistoryCursor next = HistoryCursor.parse(HistoryCursor.of(first.get(1)).format());
+        List<Document> second = MessageBuckets.newestFirst(List.of(bucket).iterator(), next, 2, 3_600_000L);
+        assertEquals(List.of(ids[2], ids[1]), second.stream().map(m -> m.getObjectId("_id")).toList());
+    }
+}
@@ -0,0 +1,123 @@
+package com.dim.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageBucketsTest {
+
+    private static final long WINDOW = 60_000L;
+
+    private static Document message(String room, long timestamp) {
+        return new Document("_id", new ObjectId()).append("room", room).append("from", "u")
+            .append("payload", "p" + timestamp).append("timestamp", new Date(timestamp));
+    }
+
+    @Test
+    void groupSplitsOnWindowsRoomsAndMax() {
+        List<Document> docs = List.of(
+            message("r1", 59_000), message("r1", 59_500), message("r1", 59_900),
+            message("r1", 60_000), message("r2", 60_001));
+        List<MessageBuckets.Bucket> buckets = MessageBuckets.group(docs, WINDOW, 2);
+
+        assertEquals(4, buckets.size());
+        assertEquals(List.of(0L, 0L, 60_000L, 60_000L), buckets.stream().map(b -> b.start().getTime()).toList());
+        assertEquals(List.of("r1", "r1", "r1", "r2"), buckets.stream().map(MessageBuckets.Bucket::room).toList());
+        assertEquals(List.of(2, 1, 1, 1), buckets.stream().map(b -> b.messages().size()).toList());
+        // ids are kept so cursors stay valid
+        assertEquals(docs.get(0).getObjectId("_id"), buckets.get(0).messages().get(0).getObjectId("_id"));
+    }
+
+    @Test
+    void newestFirstAcrossWindowsStopsEarly() {
+        // five windows of three messages each, newest bucket first as the index returns them
+        List<Document> buckets = new ArrayList<>();
+        List<Document> all = new ArrayList<>();
+        for (int w = 4; w >= 0; w--) {
+            List<Document> messages = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                messages.add(message("r1", w * WINDOW + i * 1000));
+            }
+            all.addAll(0, messages);
+            buckets.add(bucket(w * WINDOW, messages, true));
+        }
+        CountingIterator it = new CountingIterator(buckets);
+        List<Document> newest = MessageBuckets.newestFirst(it, null, 4, WINDOW);
+
+        assertEquals(List.of(all.get(14), all.get(13), all.get(12), all.get(11)), newest);
+        // the third bucket ends before the fourth message kept: fetched for its bound, then the read stops
+        assertEquals(3, it.consumed);
+    }
+
+    @Test
+    void newestFirstBeforeCursor() {
+        List<Document> older = List.of(message("r1", 1000), message("r1", 2000));
+        List<Document> newer = List.of(message("r1", WINDOW + 1000), message("r1", WINDOW + 2000));
+        List<Document> buckets = List.of(bucket(WINDOW, newer, true), bucket(0, older, true));
+        HistoryCursor before = HistoryCursor.of(newer.get(0));
+
+        List<Document> page = MessageBuckets.newestFirst(buckets.iterator(), before, 10, WINDOW);
+        assertEquals(List.of(older.get(1), older.get(0)), page);
+    }
+
+    @Test
+    void legacyBucketsAreBoundedByTheirWindow() {
+        // a bucket without 'last' may hold anything up to the end of its window: it must be read
+        List<Document> legacy = List.of(message("r1", WINDOW - 1));
+        List<Document> recent = List.of(message("r1", 1000), message("r1", 2000));
+        List<Document> buckets = List.of(bucket(0, recent, true), bucket(0, legacy, false),
+            bucket(-WINDOW, List.of(message("r1", -1000)), false),
+            bucket(-2 * WINDOW, List.of(message("r1", -WINDOW - 1000)), false));
+        CountingIterator it = new CountingIterator(buckets);
+
+        List<Document> newest = MessageBuckets.newestFirst(it, null, 2, WINDOW);
+        assertEquals(List.of(legacy.get(0), recent.get(1)), newest);
+        // the window before ends at 0: the read stops there
+        assertEquals(3, it.consumed);
+    }
+
+    @Test
+    void nothingWithoutLimit() {
+        CountingIterator it = new CountingIterator(List.of(bucket(0, List.of(message("r1", 1)), true)));
+        assertTrue(MessageBuckets.newestFirst(it, null, 0, WINDOW).isEmpty());
+        assertEquals(0, it.consumed);
+    }
+
+    private static Document bucket(long start, List<Document> messages, boolean withLast) {
+        Document bucket = new Document("start", new Date(start)).append("messages", messages);
+        if (withLast) {
+            Document newest = messages.get(messages.size() - 1);
+            bucket.append("last", new Document("timestamp", newest.getDate("timestamp"))
+                .append("_id", newest.getObjectId("_id")));
+        }
+        return bucket;
+    }
+
+    private static final class CountingIterator implements Iterator<Document> {
+        private final Iterator<Document> it;
+        int consumed;
+
+        CountingIterator(List<Document> buckets) {
+            this.it = buckets.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public Document next() {
+            consumed++;
+            return it.next();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.dim.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Buffered membership writes against an in-memory stand-in for the rooms collection that only
+ * records the bulkWrite calls.
+ */
+class RoomPersistenceServiceTest {
+
+    private final List<List<WriteModel<Document>>> writes = new ArrayList<>();
+    private final Document stored = new Document("roomId", "r1").append("members", List.of("carol"));
+    private RuntimeException failure;
+    private RoomPersistenceService rooms;
+
+    @BeforeEach
+    void setUp() {
+        rooms = new RoomPersistenceService();
+        rooms.mongoClient = mongoClient();
+        // flushes are driven by the test
+        rooms.config = () -> 3_600_000L;
+        rooms.registry = new SimpleMeterRegistry();
+        rooms.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        failure = null;
+        rooms.shutdown();
+    }
+
+    @Test
+    void joinAndLeaveCollapse() {
+        rooms.addMember("r1", "alice");
+        rooms.removeMember("r1", "alice");
+        rooms.addMember("r1", "bob");
+        rooms.addMember("r2", "bob");
+        rooms.removeMember("r2", "carol");
+        rooms.flush();
+
+        assertEquals(1, writes.size());
+        assertEquals(Map.of(
+            "r1 $pull", List.of("alice"),
+            "r1 $addToSet", List.of("bob"),
+            "r2 $addToSet", List.of("bob"),
+            "r2 $pull", List.of("carol")), updates(writes.get(0)));
+        assertEquals(0, rooms.getPendingRooms());
+
+        rooms.flush();
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    void pendingChangesAreVisible() {
+        rooms.addMember("r1", "alice");
+        rooms.removeMember("r1", "carol");
+        assertEquals(List.of("alice"), rooms.getRoom("r1").getList("members", String.class));
+    }
+
+    @Test
+    void failedFlushIsRetriedBehindNewerChanges() {
+        rooms.addMember("r1", "alice");
+        rooms.addMember("r1", "bob");
+        failure = new MongoException("connection refused");
+        rooms.flush();
+        assertEquals(1, rooms.getPendingRooms());
+
+        // alice left after the failed write: her removal wins over the requeued $addToSet
+        rooms.removeMember("r1", "alice");
+        failure = null;
+        rooms.flush();
+        assertEquals(Map.of("r1 $addToSet", List.of("bob"), "r1 $pull", List.of("alice")), updates(writes.get(1)));
+        assertEquals(0, rooms.getPendingRooms());
+    }
+
+    @Test
+    void rejectedUpdatesAreNotRetried() {
+        rooms.addMember("r1", "alice");
+        failure = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+            List.of(new BulkWriteError(2, "rejected", new BsonDocument(), 0)), null, new ServerAddress(), Set.of());
+        rooms.flush();
+        assertEquals(0, rooms.getPendingRooms());
+    }
+
+    /**
+     * "roomId operator" -> members of each update, sorted.
+     */
+    private static Map<String, List<String>> updates(List<WriteModel<Document>> models) {
+        Map<String, List<String>> updates = new TreeMap<>();
+        for (WriteModel<Document> model : models) {
+            UpdateOneModel<Document> update = (UpdateOneModel<Document>) model;
+            String roomId = ((Document) update.getFilter()).getString("roomId");
+            Document doc = (Document) update.getUpdate();
+            String op = doc.keySet().iterator().next();
+            Document members = doc.get(op, Document.class).get("members", Document.class);
+            List<String> ids = new ArrayList<>(members.getList(op.equals("$pull") ? "$in" : "$each", String.class));
+            ids.sort(null);
+            updates.put(roomId + " " + op, ids);
+        }
+        return updates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoClient mongoClient() {
+        FindIterable<Document> found = proxy(FindIterable.class, (method, args) ->
+            method.equals("first") ? new Document(stored) : null);
+        MongoCollection<Document> collection = proxy(MongoCollection.class, (method, args) -> {
+            if (method.equals("find")) return found;
+            if (method.equals("bulkWrite")) {
+                writes.add(new ArrayList<>((List<WriteModel<Document>>) args[0]));
+                if (failure != null) throw failure;
+                return BulkWriteResult.unacknowledged();
+            }
+            throw new UnsupportedOperationException(method);
+        });
+        MongoDatabase database = proxy(MongoDatabase.class, (method, args) -> collection);
+        return proxy(MongoClient.class, (method, args) -> database);
+    }
+
+    private interface Call {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Call call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (p, method, args) -> call.invoke(method.getName(), args));
+    }
+}
@@ -0,0 +1,43 @@
+package com.dim.service;
+
+import com.dim.model.UserProfile;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UserProfileServiceTest {
+
+    private static final Instant SEEN = Instant.parse("2024-03-01T10:15:30.250Z");
+
+    @Test
+    void legacyStringLastSeen() {
+        ObjectId id = new ObjectId();
+        Document legacy = new Document("_id", id).append("userId", "alice").append("displayName", "Alice")
+            .append("status", "offline").append("lastSeen", SEEN.toString());
+        UserProfile profile = UserProfileService.toProfile("alice", legacy);
+
+        assertEquals(id.toHexString(), profile.getId());
+        assertEquals("Alice", profile.getDisplayName());
+        assertEquals("offline", profile.getStatus());
+        assertEquals(SEEN, profile.getLastSeen());
+    }
+
+    @Test
+    void dateLastSeen() {
+        Document doc = new Document("userId", "bob").append("lastSeen", Date.from(SEEN));
+        assertEquals(SEEN, UserProfileService.toProfile("bob", doc).getLastSeen());
+    }
+
+    @Test
+    void missingOrUnreadableLastSeen() {
+        assertNull(UserProfileService.toProfile("carol", new Document()).getLastSeen());
+        assertNull(UserProfileService.lastSeenOf("yesterday"));
+        assertNull(UserProfileService.lastSeenOf(42));
+    }
+}
@@ -0,0 +1,95 @@
+package com.dim.ws;
+
+import com.dim.model.Message;
+import com.dim.model.SignalMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of the message and signal listeners: the former readTree / toString / new JsonObject
+ * / encode chain against the single-parse {@link EnvelopeCodec}. Run with -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeCodecBenchmark {
+
+    private static final String ORIGIN = "5f0c1a9e-0000-4000-8000-000000000000";
+    private static final String SIGNAL = "{\"room\":\"room-42\",\"from\":\"user-1234\",\"kind\":\"ice\","
+        + "\"candidate\":\"candidate:842163049 1 udp 1677729535 192.0.2.10 49203 typ srflx raddr 0.0.0.0 rport 0\","
+        + "\"sdpMid\":\"0\",\"sdpMLineIndex\":0}";
+    private static final String MESSAGE = "{\"room\":\"room-42\",\"from\":\"user-1234\","
+        + "\"payload\":\"hello everyone, the build is green again\"}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Benchmark
+    public void legacyMessage(Blackhole bh) throws Exception {
+        JsonNode node = mapper.readTree(MESSAGE);
+        bh.consume(node.has("room") ? node.get("room").asText() : null);
+        bh.consume(node.has("from") ? node.get("from").asText() : null);
+        bh.consume(node.has("payload") ? node.get("payload").asText() : node.toString());
+        // publish
+        JsonObject json = new JsonObject(node.toString());
+        json.put("origin", ORIGIN);
+        bh.consume(json.encode());
+    }
+
+    @Benchmark
+    public void envelopeMessage(Blackhole bh) {
+        Message msg = EnvelopeCodec.fromClient(Message.TYPE, MESSAGE, ORIGIN);
+        bh.consume(msg.getRoom());
+        bh.consume(msg.getFrom());
+        bh.consume(msg.getPayload());
+        bh.consume(msg.wire());
+    }
+
+    @Benchmark
+    public void legacySignal(Blackhole bh) throws Exception {
+        JsonNode node = mapper.readTree(SIGNAL);
+        bh.consume(node.has("target") ? node.get("target").asText() : null);
+        bh.consume(node.has("room") ? node.get("room").asText() : null);
+        // local room fan-out
+        bh.consume(node.toString());
+        // publish
+        JsonObject json = new JsonObject(node.toString());
+        json.put("origin", ORIGIN);
+        bh.consume(json.encode());
+    }
+
+    @Benchmark
+    public void envelopeSignal(Blackhole bh) {
+        Message signal = EnvelopeCodec.fromClient(SignalMessage.TYPE, SIGNAL, ORIGIN);
+        bh.consume(((SignalMessage) signal).getTarget());
+        bh.consume(signal.getRoom());
+        // local room fan-out reuses the received text, publish encodes the envelope once
+        bh.consume(signal.clientWire());
+        bh.consume(signal.wire());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(EnvelopeCodecBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package com.dim.ws;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal Socket.IO v2 (Engine.IO 3) client over a raw websocket, just enough to drive the server:
+ * connect with a userId, emit string events, and receive events in text frames.
+ *
+ * Kept deliberately cheap on the receive side since it shares the JVM with the server under test:
+ * frames are not JSON-decoded, the listener gets the event name and the raw frame.
+ */
+final class LoadClient implements WebSocket.Listener {
+
+    interface EventListener {
+        void onEvent(LoadClient client, String event, CharSequence frame);
+    }
+
+    private static final String EVENT_PREFIX = "42[\"";
+
+    final String userId;
+    final String room;
+    volatile String sessionId;
+
+    private final EventListener listener;
+    private final StringBuilder partial = new StringBuilder();
+    private WebSocket socket;
+    // the JDK websocket accepts a single outstanding send: sends are chained
+    private CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+
+    LoadClient(String userId, String room, EventListener listener) {
+        this.userId = userId;
+        this.room = room;
+        this.listener = listener;
+    }
+
+    CompletableFuture<LoadClient> connect(HttpClient http, String host, int port) {
+        URI uri = URI.create("ws://" + host + ":" + port + "/socket.io/?EIO=3&transport=websocket&userId=" + userId);
+        return http.newWebSocketBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .buildAsync(uri, this)
+            .thenApply(ws -> {
+                socket = ws;
+                return this;
+            });
+    }
+
+    /**
+     * Emit a Socket.IO event whose single argument is a JSON document sent as a string,
+     * as the server listeners expect.
+     */
+    void emit(String event, String json) {
+        StringBuilder frame = new StringBuilder(json.length() * 2 + event.length() + 8);
+        frame.append(EVENT_PREFIX).append(event).append("\",\"");
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"' || c == '\\') frame.append('\\');
+            frame.append(c);
+        }
+        send(frame.append("\"]").toString());
+    }
+
+    /**
+     * Engine.IO ping, the server closes sessions that stay silent longer than its ping timeout.
+     */
+    void ping() {
+        send("2");
+    }
+
+    private synchronized void send(String text) {
+        WebSocket ws = socket;
+        if (ws == null) return;
+        lastSend = lastSend.handle((r, e) -> null).thenCompose(v -> ws.sendText(text, true));
+    }
+
+    void close() {
+        WebSocket ws = socket;
+        if (ws == null) return;
+        try {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "").get(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            ws.abort();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        webSocket.request(1);
+        CharSequence frame;
+        if (!last) {
+            partial.append(data);
+            return null;
+        } else if (partial.length() > 0) {
+            frame = partial.append(data).toString();
+            partial.setLength(0);
+        } else {
+            frame = data;
+        }
+        dispatch(frame);
+        return null;
+    }
+
+    private void dispatch(CharSequence frame) {
+        if (frame.length() < EVENT_PREFIX.length() || !startsWith(frame, EVENT_PREFIX)) {
+            return; // open/ping/pong/connect packets
+        }
+        int end = EVENT_PREFIX.length();
+        while (end < frame.length() && frame.charAt(end) != '"') end++;
+        String event = frame.subSequence(EVENT_PREFIX.length(), end).toString();
+        if ("connected".equals(event)) {
+            // 42["connected","<uuid>"]
+            int start = end + 3;
+            int stop = start;
+            while (stop < frame.length() && frame.charAt(stop) != '"') stop++;
+            sessionId = frame.subSequence(start, stop).toString();
+        }
+        listener.onEvent(this, event, frame);
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        webSocket.request(1);
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+package com.dim.ws;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Diffs produced by {@link PresenceAggregator#flush()}; the timers are not started.
+ */
+class PresenceAggregatorTest {
+
+    private final List<JsonObject> sent = new ArrayList<>();
+    private PresenceAggregator presence;
+
+    @BeforeEach
+    void setUp() {
+        presence = new PresenceAggregator();
+        presence.wsServer = new SocketIOServerWrapper() {
+            @Override
+            public void sendRoomEvent(String room, String event, String data) {
+                assertEquals("presence", event);
+                JsonObject diff = new JsonObject(data);
+                assertEquals(room, diff.getString("room"));
+                sent.add(diff);
+            }
+        };
+    }
+
+    @Test
+    void firstSessionInRoomIsAnnounced() {
+        UUID a = UUID.randomUUID();
+        presence.connected("alice", a);
+        presence.joined("alice", "r1");
+        presence.flush();
+        assertEquals(1, sent.size());
+        assertEquals(new JsonArray().add("alice"), sent.get(0).getJsonArray("online"));
+        assertTrue(sent.get(0).getJsonArray("offline").isEmpty());
+
+        // a second session joining the same room changes nothing
+        UUID b = UUID.randomUUID();
+        presence.connected("alice", b);
+        presence.joined("alice", "r1");
+        presence.flush();
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void offlineOnlyWhenLastSessionLeaves() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        presence.connected("alice", a);
+        presence.connected("alice", b);
+        presence.joined("alice", "r1");
+        presence.joined("alice", "r1");
+        presence.flush();
+        sent.clear();
+
+        assertFalse(presence.disconnected("alice", a, Set.of("r1")));
+        presence.flush();
+        assertTrue(sent.isEmpty());
+        assertTrue(presence.isConnected("alice"));
+
+        presence.left("alice", "r1");
+        presence.flush();
+        assertEquals(1, sent.size());
+        assertEquals(new JsonArray().add("alice"), sent.get(0).getJsonArray("offline"));
+        // leaving again is a no-op
+        presence.left("alice", "r1");
+        presence.flush();
+        assertEquals(1, sent.size());
+        assertTrue(presence.disconnected("alice", b, Set.of()));
+        assertFalse(presence.isConnected("alice"));
+    }
+
+    @Test
+    void reconnectWithinWindowCancelsOut() {
+        UUID a = UUID.randomUUID();
+        presence.connected("alice", a);
+        presence.joined("alice", "r1");
+        presence.flush();
+        sent.clear();
+
+        assertTrue(presence.disconnected("alice", a, Set.of("r1")));
+        UUID b = UUID.randomUUID();
+        presence.connected("alice", b);
+        presence.joined("alice", "r1");
+        presence.flush();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void onePerRoom() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        presence.connected("alice", a);
+        presence.connected("bob", b);
+        presence.joined("alice", "r1");
+        presence.joined("bob", "r1");
+        presence.joined("bob", "r2");
+        presence.flush();
+        assertEquals(2, sent.size());
+        JsonObject r1 = sent.stream().filter(d -> d.getString("room").equals("r1")).findFirst().orElseThrow();
+        assertEquals(Set.of("alice", "bob"), Set.copyOf(r1.getJsonArray("online").getList()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.dim.ws;
+
+import com.corundumstudio.socketio.Configuration;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.dim.config.RoomHistoryConfig;
+import com.dim.model.Message;
+import com.dim.service.RoomHistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive side of the bus: decoding a bus payload into an envelope and routing it through
+ * {@link SocketIOServerWrapper#onPubSub} to an (empty) room of an unstarted server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PubSubRoutingBenchmark {
+
+    private SocketIOServerWrapper wrapper;
+    private Buffer messagePayload;
+    private Buffer signalPayload;
+
+    @Setup
+    public void setup() throws Exception {
+        wrapper = new SocketIOServerWrapper();
+        Field server = SocketIOServerWrapper.class.getDeclaredField("server");
+        server.setAccessible(true);
+        server.set(wrapper, new SocketIOServer(new Configuration()));
+        wrapper.registry = new SimpleMeterRegistry();
+        wrapper.registerMeters();
+
+        RoomHistoryService history = new RoomHistoryService();
+        Field historyConfig = RoomHistoryService.class.getDeclaredField("config");
+        historyConfig.setAccessible(true);
+        historyConfig.set(history, new RoomHistoryConfig() {
+            public int replaySize() { return 0; }
+            public long memoryBudgetBytes() { return 0; }
+            public int redisListSize() { return 0; }
+            public int pageSize() { return 0; }
+            public int maxPageSize() { return 0; }
+        });
+        wrapper.roomHistoryService = history;
+
+        messagePayload = Buffer.buffer(new JsonObject()
+            .put("type", Message.TYPE).put("room", "room-42").put("origin", "other")
+            .put("body", new JsonObject().put("room", "room-42").put("from", "user-1234")
+                .put("payload", "hello from another node")).encode());
+        signalPayload = Buffer.buffer(new JsonObject()
+            .put("type", "signal").put("room", "room-42").put("origin", "other")
+            .put("body", new JsonObject().put("room", "room-42").put("from", "user-1234")
+                .put("kind", "ice").put("candidate", "candidate:842163049 1 udp 1677729535 192.0.2.10 49203 typ srflx"))
+            .encode());
+    }
+
+    @Benchmark
+    public Message routeMessage() {
+        Message msg = EnvelopeCodec.fromBus(new JsonObject(messagePayload), messagePayload);
+        wrapper.onPubSub(msg);
+        return msg;
+    }
+
+    @Benchmark
+    public Message routeSignal() {
+        Message msg = EnvelopeCodec.fromBus(new JsonObject(signalPayload), signalPayload);
+        wrapper.onPubSub(msg);
+        return msg;
+    }
+}
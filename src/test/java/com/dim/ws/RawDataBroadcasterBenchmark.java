@@ -0,0 +1,102 @@
+package com.dim.ws;
+
+import com.dim.config.RawPushConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RawDataBroadcaster} up to the Socket.IO send: binary path, debug hex dump, the former
+ * per-byte String.format dump, and JSON text routing. Sends are captured by a stub server wrapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawDataBroadcasterBenchmark {
+
+    @Param({"64", "4096"})
+    int size;
+
+    private byte[] data;
+    private String roomText;
+    private CapturingWrapper wsServer;
+    private RawDataBroadcaster binary;
+    private RawDataBroadcaster hexDebug;
+
+    static final class CapturingWrapper extends SocketIOServerWrapper {
+        Object last;
+
+        @Override public void broadcastText(String text) { last = text; }
+        @Override public void broadcastToRoom(String room, String text) { last = text; }
+        @Override public void broadcastBinary(byte[] data) { last = data; }
+        @Override public void broadcastBinaryToRoom(String room, byte[] data) { last = data; }
+    }
+
+    private static RawPushConfig config(boolean hex) {
+        return new RawPushConfig() {
+            public boolean hexDebug() { return hex; }
+            public int streamQueueCapacity() { return 1; }
+            public long backpressureTimeoutMs() { return 0; }
+            public int maxRecordBytes() { return 0; }
+        };
+    }
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        roomText = "{\"room\":\"room-42\",\"payload\":\"sensor frame 1234\"}";
+        wsServer = new CapturingWrapper();
+        binary = new RawDataBroadcaster();
+        binary.wsServer = wsServer;
+        binary.config = config(false);
+        hexDebug = new RawDataBroadcaster();
+        hexDebug.wsServer = wsServer;
+        hexDebug.config = config(true);
+    }
+
+    @Benchmark
+    public Object broadcastBytesBinary() {
+        binary.broadcastBytes(data);
+        return wsServer.last;
+    }
+
+    @Benchmark
+    public Object broadcastBytesHexDebug() {
+        hexDebug.broadcastBytes(data);
+        return wsServer.last;
+    }
+
+    @Benchmark
+    public Object broadcastBytesLegacyFormat() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02X ", b));
+        }
+        sb.append(" | ");
+        sb.append(new String(data, StandardCharsets.UTF_8));
+        wsServer.broadcastText(sb.toString());
+        return wsServer.last;
+    }
+
+    @Benchmark
+    public Object broadcastTextRoom() {
+        binary.broadcastText(roomText);
+        return wsServer.last;
+    }
+}
@@ -0,0 +1,135 @@
+package com.dim.ws;
+
+import com.dim.config.RawPushConfig;
+import com.dim.model.IngestResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.config.PropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Parsing and limits of streamed pushes; routing is captured instead of sent to Socket.IO.
+ */
+class RawStreamIngestorTest {
+
+    private static final int MAX = 32;
+
+    // raw text of each routed record
+    private final BlockingQueue<String> routed = new LinkedBlockingQueue<>();
+    private RawStreamIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        ingestor = new RawStreamIngestor();
+        ingestor.config = new SmallRyeConfigBuilder()
+            .withSources(new PropertiesConfigSource(Map.of(
+                "scigal.raw.max-record-bytes", String.valueOf(MAX)), "raw-stream-test", 500))
+            .withMapping(RawPushConfig.class)
+            .build()
+            .getConfigMapping(RawPushConfig.class);
+        ingestor.broadcaster = new RawDataBroadcaster() {
+            @Override
+            public void route(JsonObject json, String raw) {
+                routed.add(raw);
+            }
+        };
+        ingestor.registry = new SimpleMeterRegistry();
+        ingestor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestor.shutdown();
+    }
+
+    @Test
+    void oversizeLineIsRejectedAndTheNextOneKept() throws Exception {
+        String big = "{\"payload\":\"" + "x".repeat(MAX) + "\"}";
+        IngestResult result = ingestor.ingestNdjson(stream(big + "\n{\"a\":1}\n"));
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(List.of("record 1: record too large"), result.getErrors());
+        assertEquals("{\"a\":1}", next());
+        assertNull(routed.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void crlfAndLinesOfExactlyMax() throws Exception {
+        // MAX bytes once its '\r' is dropped
+        String exact = "{\"p\":\"" + "y".repeat(MAX - 8) + "\"}";
+        assertEquals(MAX, exact.length());
+        IngestResult result = ingestor.ingestNdjson(stream("{\"a\":1}\r\n\r\n" + exact + "\r\n{\"b\":2}"));
+
+        assertEquals(3, result.getAccepted());
+        assertEquals(0, result.getRejected());
+        assertEquals("{\"a\":1}", next());
+        assertEquals(exact, next());
+        assertEquals("{\"b\":2}", next());
+    }
+
+    @Test
+    void invalidLinesAreNumbered() throws Exception {
+        IngestResult result = ingestor.ingestNdjson(stream("{\"a\":1}\nnot json\n\n{\"b\":2}\n"));
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(List.of("record 2: invalid JSON"), result.getErrors());
+    }
+
+    @Test
+    void framedOversizeIsSkipped() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        frame(out, "{\"payload\":\"" + "x".repeat(MAX) + "\"}");
+        frame(out, "{\"room\":\"r1\",\"level\":3}");
+        IngestResult result = ingestor.ingestFramed(new ByteArrayInputStream(body.toByteArray()));
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(List.of("record 1: record too large"), result.getErrors());
+        // no payload/message: the record text itself is what the room receives
+        assertEquals("{\"room\":\"r1\",\"level\":3}", next());
+    }
+
+    @Test
+    void truncatedFrameEndsTheStream() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        frame(out, "{\"a\":1}");
+        out.writeInt(20);
+        out.writeBytes("{\"b\"");
+        IngestResult result = ingestor.ingestFramed(new ByteArrayInputStream(body.toByteArray()));
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(List.of("record 2: truncated frame"), result.getErrors());
+    }
+
+    private String next() throws InterruptedException {
+        return routed.poll(5, TimeUnit.SECONDS);
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void frame(DataOutputStream out, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,91 @@
+package com.dim.ws;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.impl.types.BulkType;
+import io.vertx.redis.client.impl.types.MultiType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of decoding a pub/sub push: the former toString()/lastIndexOf/regex parsing
+ * against {@link RespPushDecoder}. Run with -prof gc to compare allocation per message.
+ *
+ * The legacy path only works for payloads without commas, so it is measured on a single-field
+ * object; the decoder is also measured on a realistic multi-field event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespPushDecoderBenchmark {
+
+    private Response singleField;
+    private Response chatEvent;
+
+    @Setup
+    public void setup() {
+        singleField = push("{\"payload\":\"hello world from the other node\"}");
+        chatEvent = push(new JsonObject()
+            .put("type", "message")
+            .put("room", "room-42")
+            .put("from", "user-1234")
+            .put("payload", "hello, world from the other node")
+            .put("origin", "5f0c1a9e-0000-4000-8000-000000000000")
+            .encode());
+    }
+
+    private static Response push(String payload) {
+        MultiType resp = MultiType.create(3, false);
+        resp.add(BulkType.create(Buffer.buffer("message"), false));
+        resp.add(BulkType.create(Buffer.buffer("scigal:messages"), false));
+        resp.add(BulkType.create(Buffer.buffer(payload), false));
+        return resp;
+    }
+
+    @Benchmark
+    public JsonObject legacyStringParsing() {
+        String s = singleField.toString();
+        if (!s.contains("message")) return null;
+        int last = s.lastIndexOf(',');
+        String payload = s.substring(last + 1).trim();
+        if (payload.startsWith("\"")) payload = payload.substring(1);
+        if (payload.endsWith("\"") || payload.endsWith("]")) payload = payload.replaceAll("\"]+$", "");
+        // the former regex never stripped the bracket closing MultiType.toString(), cut it here
+        if (payload.endsWith("]")) payload = payload.substring(0, payload.length() - 1);
+        return new JsonObject(payload);
+    }
+
+    @Benchmark
+    public JsonObject decoderSingleField() {
+        return new JsonObject(RespPushDecoder.payload(singleField));
+    }
+
+    @Benchmark
+    public JsonObject decoderChatEvent() {
+        return new JsonObject(RespPushDecoder.payload(chatEvent));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RespPushDecoderBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()).run();
+    }
+}
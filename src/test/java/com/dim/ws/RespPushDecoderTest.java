@@ -0,0 +1,105 @@
+package com.dim.ws;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.impl.ParserHandler;
+import io.vertx.redis.client.impl.RESPParser;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pushes go through the client's own RESP parser, fed in pieces the way a socket delivers them.
+ */
+class RespPushDecoderTest {
+
+    private static final String PAYLOAD = "{\"type\":\"message\",\"payload\":\"a,b\\r\\nc\"}";
+
+    @Test
+    void messageInChunksOfEverySize() {
+        byte[] wire = array("message", "scigal:messages", PAYLOAD).getBytes(StandardCharsets.UTF_8);
+        for (int cut = 1; cut < wire.length; cut++) {
+            List<Response> replies = parse(wire, cut);
+            assertEquals(1, replies.size(), "chunks of " + cut);
+            assertEquals(PAYLOAD, RespPushDecoder.payload(replies.get(0)).toString(StandardCharsets.UTF_8), "chunks of " + cut);
+            assertEquals("scigal:messages", RespPushDecoder.channel(replies.get(0)).toString(), "chunks of " + cut);
+        }
+    }
+
+    @Test
+    void resp3PushAndPatternMessage() {
+        String wire = ">3\r\n" + bulk("message") + bulk("scigal:node:1") + bulk(PAYLOAD)
+            + array("pmessage", "scigal:*", "scigal:room:42", "{}");
+        List<Response> replies = parse(wire.getBytes(StandardCharsets.UTF_8), 7);
+        assertEquals(2, replies.size());
+        assertEquals(PAYLOAD, RespPushDecoder.payload(replies.get(0)).toString(StandardCharsets.UTF_8));
+        assertEquals("scigal:node:1", RespPushDecoder.channel(replies.get(0)).toString());
+        assertEquals("{}", RespPushDecoder.payload(replies.get(1)).toString());
+        assertEquals("scigal:room:42", RespPushDecoder.channel(replies.get(1)).toString());
+    }
+
+    @Test
+    void otherRepliesHaveNoPayload() {
+        String wire = "*3\r\n" + bulk("subscribe") + bulk("scigal:messages") + ":1\r\n"
+            + "+PONG\r\n"
+            + array("message", "scigal:messages");
+        List<Response> replies = parse(wire.getBytes(StandardCharsets.UTF_8), 5);
+        assertEquals(3, replies.size());
+        for (Response reply : replies) {
+            assertNull(RespPushDecoder.payload(reply));
+            assertNull(RespPushDecoder.channel(reply));
+        }
+        assertNull(RespPushDecoder.payload(null));
+    }
+
+    private static String array(String... items) {
+        StringBuilder sb = new StringBuilder("*").append(items.length).append("\r\n");
+        for (String item : items) {
+            sb.append(bulk(item));
+        }
+        return sb.toString();
+    }
+
+    private static String bulk(String s) {
+        return "$" + s.getBytes(StandardCharsets.UTF_8).length + "\r\n" + s + "\r\n";
+    }
+
+    /**
+     * Replies parsed from {@code wire}, delivered in chunks of {@code chunk} bytes.
+     */
+    private static List<Response> parse(byte[] wire, int chunk) {
+        List<Response> replies = new ArrayList<>();
+        ParserHandler handler = new ParserHandler() {
+            @Override
+            public void handle(Response response) {
+                replies.add(response);
+            }
+
+            @Override
+            public void fail(Throwable t) {
+                throw new AssertionError(t);
+            }
+        };
+        RESPParser parser = newParser(handler);
+        for (int i = 0; i < wire.length; i += chunk) {
+            parser.handle(Buffer.buffer().appendBytes(wire, i, Math.min(chunk, wire.length - i)));
+        }
+        return replies;
+    }
+
+    private static RESPParser newParser(ParserHandler handler) {
+        try {
+            Constructor<RESPParser> ctor = RESPParser.class.getDeclaredConstructor(ParserHandler.class, int.class);
+            ctor.setAccessible(true);
+            return ctor.newInstance(handler, 32);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.dim.ws;
+
+import com.dim.config.KubernetesPortDetector;
+import com.dim.config.OutboundConfig;
+import com.dim.config.PersistenceDispatchConfig;
+import com.dim.config.PresenceConfig;
+import com.dim.config.RateLimitConfig;
+import com.dim.config.RoomHistoryConfig;
+import com.dim.config.SessionRegistryConfig;
+import com.dim.config.WebSocketConfig;
+import com.dim.service.CacheService;
+import com.dim.service.CallService;
+import com.dim.service.MessageService;
+import com.dim.service.PersistenceDispatcher;
+import com.dim.service.RoomHistoryService;
+import com.dim.service.RoomPersistenceService;
+import com.dim.service.SessionService;
+import com.dim.service.UserProfileService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.config.PropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfig;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.bson.Document;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+
+/**
+ * Headless end-to-end load test: starts one or more {@link SocketIOServerWrapper} in this JVM,
+ * wired to in-memory stand-ins for MongoDB and Redis, connects simulated Socket.IO clients
+ * spread over rooms, and measures send-to-receive latency of the fan-out.
+ *
+ * With several instances, their {@link InMemoryBus} share a hub and relay published envelopes
+ * through {@link EnvelopeCodec#fromBus}, as the Redis buses do, so cross-node delivery is measured too.
+ *
+ * Run with {@code mvn -Ploadtest test}; parameters are system properties ({@code -Dload.clients=5000}, ...),
+ * server settings use the usual keys ({@code -Dwebsocket.worker-threads=8}). Each client holds two sockets
+ * in this process: raise {@code ulimit -n} accordingly.
+ */
+public final class SocketLoadHarness {
+
+    private static final int INSTANCES = Integer.getInteger("load.instances", 1);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 2000);
+    private static final int ROOMS = Integer.getInteger("load.rooms", 100);
+    // uniform | zipf
+    private static final String DISTRIBUTION = System.getProperty("load.distribution", "zipf");
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("load.zipf-exponent", "1.0"));
+    // events per second sent by all clients together
+    private static final int RATE = Integer.getInteger("load.rate", 5000);
+    private static final double SIGNAL_RATIO = Double.parseDouble(System.getProperty("load.signal-ratio", "0.2"));
+    private static final int PAYLOAD_BYTES = Integer.getInteger("load.payload-bytes", 128);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-s", 10);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-s", 30);
+    private static final int CONNECT_BATCH = Integer.getInteger("load.connect-batch", 200);
+    private static final int BASE_PORT = Integer.getInteger("load.port", 19092);
+    private static final String RESULT_FILE = System.getProperty("load.result-file", "target/loadtest-result.json");
+
+    private static final String HOST = "127.0.0.1";
+    private static final int TICK_MS = 10;
+
+    private final Vertx vertx = Vertx.vertx();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Node> nodes = new ArrayList<>();
+    private final InMemoryBus.Hub hub = new InMemoryBus.Hub();
+    private final List<LoadClient> clients = new ArrayList<>();
+    private final Map<String, List<LoadClient>> members = new ConcurrentHashMap<>();
+    private final Recorder latency = new Recorder(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final char[] padding;
+
+    private SocketLoadHarness() {
+        padding = new char[Math.max(0, PAYLOAD_BYTES - 24)];
+        Arrays.fill(padding, 'x');
+    }
+
+    public static void main(String[] args) throws Exception {
+        quietLogging();
+        SocketLoadHarness harness = new SocketLoadHarness();
+        try {
+            harness.run();
+        } finally {
+            harness.shutdown();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.printf("load: %d instance(s), %d clients, %d rooms (%s), %d events/s, %.0f%% signals, %d B payload%n",
+            INSTANCES, CLIENTS, ROOMS, DISTRIBUTION, RATE, SIGNAL_RATIO * 100, PAYLOAD_BYTES);
+        Stores stores = new Stores();
+        for (int i = 0; i < INSTANCES; i++) {
+            nodes.add(startNode(i, stores));
+        }
+        connectClients();
+
+        ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("load-driver").daemon().factory());
+        driver.scheduleAtFixedRate(new Sender(), TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        driver.scheduleAtFixedRate(() -> clients.forEach(LoadClient::ping), 20, 20, TimeUnit.SECONDS);
+
+        TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+        latency.getIntervalHistogram();
+        long sent0 = sent.sum();
+        long expected0 = expected.sum();
+        long received0 = received.sum();
+        long cpu0 = processCpuNanos();
+        long start = System.nanoTime();
+
+        TimeUnit.SECONDS.sleep(DURATION_SECONDS);
+        driver.shutdownNow();
+        // in-flight deliveries of the last tick
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = (processCpuNanos() - cpu0) / 1e9;
+        report(latency.getIntervalHistogram(), seconds, cpuSeconds,
+            sent.sum() - sent0, expected.sum() - expected0, received.sum() - received0, stores);
+    }
+
+    private Node startNode(int index, Stores stores) throws Exception {
+        SmallRyeConfig config = new SmallRyeConfigBuilder()
+            .addDefaultSources()
+            .withSources(new PropertiesConfigSource(Map.of(
+                "websocket.host", HOST,
+                "websocket.port", String.valueOf(BASE_PORT + index),
+                // the harness measures fan-out, its clients may send above the per-session limits
+                "scigal.rate-limit.enabled", System.getProperty("load.rate-limit", "false")), "load-harness", 500))
+            .withMapping(WebSocketConfig.class)
+            .withMapping(PresenceConfig.class)
+            .withMapping(RoomHistoryConfig.class)
+            .withMapping(PersistenceDispatchConfig.class)
+            .withMapping(OutboundConfig.class)
+            .withMapping(RateLimitConfig.class)
+            .withMapping(SessionRegistryConfig.class)
+            .build();
+
+        SocketIOServerWrapper wrapper = new SocketIOServerWrapper();
+        InMemoryBus bus = new InMemoryBus();
+        bus.vertx = vertx;
+        bus.socketIOServerWrapper = wrapper;
+        bus.join(hub);
+
+        // history: real L1, no Redis list (every Redis command fails), empty MongoDB
+        RoomHistoryService history = new RoomHistoryService();
+        inject(history, "vertx", vertx);
+        inject(history, "cacheService", new CacheService(NO_REDIS, registry));
+        inject(history, "messageService", stores.messages);
+        inject(history, "config", config.getConfigMapping(RoomHistoryConfig.class));
+
+        PersistenceDispatcher dispatcher = new PersistenceDispatcher();
+        inject(dispatcher, "config", config.getConfigMapping(PersistenceDispatchConfig.class));
+        inject(dispatcher, "registry", registry);
+        invoke(dispatcher, "init");
+
+        PresenceAggregator presence = new PresenceAggregator();
+        presence.vertx = vertx;
+        presence.config = config.getConfigMapping(PresenceConfig.class);
+        presence.wsServer = wrapper;
+        presence.sessionService = stores.sessions;
+        presence.start();
+
+        wrapper.wsConfig = config.getConfigMapping(WebSocketConfig.class);
+        wrapper.k8sDetector = new KubernetesPortDetector() {
+            @Override
+            public Optional<Integer> detectWebSocketPort() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<String> detectHost() {
+                return Optional.empty();
+            }
+
+            @Override
+            public void logKubernetesInfo() {
+            }
+        };
+        wrapper.bus = bus;
+        wrapper.messageService = stores.messages;
+        wrapper.callService = stores.calls;
+        wrapper.sessionService = stores.sessions;
+        wrapper.userProfileService = stores.profiles;
+        wrapper.roomPersistenceService = stores.rooms;
+        wrapper.roomHistoryService = history;
+        wrapper.presenceAggregator = presence;
+        wrapper.persistenceDispatcher = dispatcher;
+        wrapper.registry = registry;
+        SlowConsumerMonitor slowConsumers = new SlowConsumerMonitor();
+        slowConsumers.config = config.getConfigMapping(OutboundConfig.class);
+        slowConsumers.registry = registry;
+        slowConsumers.init();
+        wrapper.slowConsumerMonitor = slowConsumers;
+        RateLimiter rateLimiter = new RateLimiter();
+        rateLimiter.config = config.getConfigMapping(RateLimitConfig.class);
+        rateLimiter.registry = registry;
+        rateLimiter.init();
+        wrapper.rateLimiter = rateLimiter;
+        SessionRegistry sessionRegistry = new SessionRegistry();
+        sessionRegistry.vertx = vertx;
+        sessionRegistry.config = config.getConfigMapping(SessionRegistryConfig.class);
+        sessionRegistry.sessionService = stores.sessions;
+        sessionRegistry.bus = bus;
+        sessionRegistry.registry = registry;
+        sessionRegistry.start();
+        wrapper.sessionRegistry = sessionRegistry;
+        wrapper.start();
+        return new Node(wrapper, bus, presence, dispatcher, BASE_PORT + index);
+    }
+
+    private void connectClients() throws Exception {
+        double[] cdf = roomDistribution();
+        HttpClient[] http = new HttpClient[Math.max(1, CLIENTS / 1000)];
+        for (int i = 0; i < http.length; i++) {
+            http[i] = HttpClient.newHttpClient();
+        }
+        LoadClient.EventListener listener = this::onEvent;
+        long t0 = System.nanoTime();
+        for (int from = 0; from < CLIENTS; from += CONNECT_BATCH) {
+            List<CompletableFuture<LoadClient>> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(CLIENTS, from + CONNECT_BATCH); i++) {
+                String room = "room-" + pick(cdf);
+                LoadClient client = new LoadClient("load-" + i, room, listener);
+                Node node = nodes.get(i % nodes.size());
+                batch.add(client.connect(http[i % http.length], HOST, node.port).thenApply(c -> {
+                    c.emit("join", new JsonObject().put("room", c.room).encode());
+                    return c;
+                }));
+            }
+            for (CompletableFuture<LoadClient> f : batch) {
+                LoadClient client = f.get(30, TimeUnit.SECONDS);
+                clients.add(client);
+                members.computeIfAbsent(client.room, r -> new ArrayList<>()).add(client);
+            }
+        }
+        // session ids are needed to target signals
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (clients.stream().anyMatch(c -> c.sessionId == null) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        System.out.printf("load: %d clients connected in %d ms, largest room %d members%n",
+            clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0),
+            members.values().stream().mapToInt(List::size).max().orElse(0));
+    }
+
+    /**
+     * Cumulative probability of each room: uniform, or zipf (room 0 hottest).
+     */
+    private static double[] roomDistribution() {
+        double[] weights = new double[ROOMS];
+        double total = 0;
+        for (int i = 0; i < ROOMS; i++) {
+            weights[i] = "uniform".equals(DISTRIBUTION) ? 1 : 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            total += weights[i];
+        }
+        double acc = 0;
+        for (int i = 0; i < ROOMS; i++) {
+            acc += weights[i] / total;
+            weights[i] = acc;
+        }
+        return weights;
+    }
+
+    private static int pick(double[] cdf) {
+        int i = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+        return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    /**
+     * Open loop: the driver sends at the configured rate whatever the delivery latency.
+     */
+    private final class Sender implements Runnable {
+        private double carry;
+
+        @Override
+        public void run() {
+            carry += RATE * TICK_MS / 1000.0;
+            int n = (int) carry;
+            carry -= n;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < n; i++) {
+                LoadClient client = clients.get(random.nextInt(clients.size()));
+                List<LoadClient> room = members.get(client.room);
+                if (random.nextDouble() < SIGNAL_RATIO && room.size() > 1) {
+                    LoadClient target = room.get(random.nextInt(room.size()));
+                    if (target == client || target.sessionId == null) continue;
+                    expected.increment();
+                    client.emit("signal", new JsonObject()
+                        .put("room", client.room).put("from", client.userId).put("target", target.sessionId)
+                        .put("kind", "ice").put("probe", probe()).encode());
+                } else {
+                    expected.add(room.size());
+                    client.emit("message", new JsonObject()
+                        .put("room", client.room).put("from", client.userId)
+                        .put("payload", probe() + new String(padding)).encode());
+                }
+                sent.increment();
+            }
+        }
+    }
+
+    private static String probe() {
+        return "@" + System.nanoTime() + "@";
+    }
+
+    private void onEvent(LoadClient client, String event, CharSequence frame) {
+        if (!"message".equals(event) && !"signal".equals(event)) return;
+        long now = System.nanoTime();
+        int start = indexOf(frame, '@', 0);
+        if (start < 0) return;
+        long sentAt = 0;
+        for (int i = start + 1; i < frame.length() && frame.charAt(i) != '@'; i++) {
+            sentAt = sentAt * 10 + (frame.charAt(i) - '0');
+        }
+        received.increment();
+        latency.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(now - sentAt)));
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private void report(Histogram h, double seconds, double cpuSeconds, long sentCount, long expectedCount,
+                        long receivedCount, Stores stores) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        double deliveredPerSec = receivedCount / seconds;
+        JsonObject result = new JsonObject()
+            .put("instances", INSTANCES)
+            .put("clients", clients.size())
+            .put("rooms", ROOMS)
+            .put("distribution", DISTRIBUTION)
+            .put("rate", RATE)
+            .put("seconds", seconds)
+            .put("sent", sentCount)
+            .put("expectedDeliveries", expectedCount)
+            .put("delivered", receivedCount)
+            .put("deliveredPerSec", deliveredPerSec)
+            .put("deliveredPerSecPerCore", deliveredPerSec / cores)
+            .put("deliveredPerCpuSecond", cpuSeconds > 0 ? receivedCount / cpuSeconds : 0)
+            .put("cores", cores)
+            .put("latencyMicros", new JsonObject()
+                .put("p50", h.getValueAtPercentile(50))
+                .put("p99", h.getValueAtPercentile(99))
+                .put("p999", h.getValueAtPercentile(99.9))
+                .put("max", h.getMaxValue()))
+            .put("persisted", new JsonObject()
+                .put("messages", stores.messages.saved.sum())
+                .put("calls", stores.calls.saved.sum())
+                .put("rooms", stores.rooms.members.size()));
+
+        System.out.printf("load: sent %d events in %.1f s, delivered %d/%d (%.2f%%)%n",
+            sentCount, seconds, receivedCount, expectedCount, expectedCount == 0 ? 0 : 100.0 * receivedCount / expectedCount);
+        System.out.printf("load: latency p50 %d us, p99 %d us, p999 %d us, max %d us%n",
+            h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMaxValue());
+        System.out.printf("load: %.0f deliveries/s, %.0f per core (%d cores), %.0f per CPU-second (server and clients)%n",
+            deliveredPerSec, deliveredPerSec / cores, cores, cpuSeconds > 0 ? receivedCount / cpuSeconds : 0);
+
+        Path out = Path.of(RESULT_FILE);
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Files.writeString(out, result.encodePrettily());
+        System.out.println("load: results written to " + out.toAbsolutePath());
+    }
+
+    private void shutdown() {
+        clients.forEach(LoadClient::close);
+        for (Node node : nodes) {
+            node.presence.stop();
+            node.wrapper.stop();
+            try {
+                invoke(node.dispatcher, "shutdown");
+            } catch (Exception ignored) {
+                // best effort
+            }
+        }
+        vertx.close();
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static void quietLogging() {
+        // the server logs every connect/join at INFO: keep the output readable and the cost out of the numbers
+        System.setProperty("org.jboss.logging.provider", "jdk");
+        Level level = Level.parse(System.getProperty("load.log-level", "WARNING"));
+        java.util.logging.Logger root = LogManager.getLogManager().getLogger("");
+        root.setLevel(level);
+        Arrays.stream(root.getHandlers()).forEach(h -> h.setLevel(level));
+    }
+
+    private static final Redis NO_REDIS = new Redis() {
+        @Override
+        public Future<RedisConnection> connect() {
+            return Future.failedFuture("no Redis in the load harness");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Future<Response> send(Request command) {
+            return Future.failedFuture("no Redis in the load harness");
+        }
+
+        @Override
+        public Future<List<Response>> batch(List<Request> commands) {
+            return Future.failedFuture("no Redis in the load harness");
+        }
+    };
+
+    private static void inject(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    private static void invoke(Object target, String method) throws Exception {
+        Method m = target.getClass().getDeclaredMethod(method);
+        m.setAccessible(true);
+        m.invoke(target);
+    }
+
+    private record Node(SocketIOServerWrapper wrapper, InMemoryBus bus, PresenceAggregator presence,
+                        PersistenceDispatcher dispatcher, int port) {}
+
+    // ---- stand-ins ----
+
+    /**
+     * In-memory replacements of the MongoDB and Redis backed services, shared by all instances.
+     */
+    private static final class Stores {
+        final MemoryMessages messages = new MemoryMessages();
+        final MemoryCalls calls = new MemoryCalls();
+        final MemorySessions sessions = new MemorySessions();
+        final MemoryProfiles profiles = new MemoryProfiles();
+        final MemoryRooms rooms = new MemoryRooms();
+    }
+
+    private static final class MemoryMessages extends MessageService {
+        final LongAdder saved = new LongAdder();
+
+        @Override
+        public void saveMessage(String room, String from, String payload) {
+            saved.increment();
+        }
+
+        @Override
+        public List<Document> getRecentMessages(String room, int limit) {
+            return List.of();
+        }
+    }
+
+    private static final class MemoryCalls extends CallService {
+        final LongAdder saved = new LongAdder();
+
+        @Override
+        public void saveCallMetadata(String callId, String from, String to, Map<String, Object> metadata) {
+            saved.increment();
+        }
+    }
+
+    private static final class MemorySessions extends SessionService {
+        final Set<String> online = ConcurrentHashMap.newKeySet();
+        final Map<String, String> owners = new ConcurrentHashMap<>();
+
+        @Override
+        public void setUserOnline(String userId) {
+            online.add(userId);
+        }
+
+        @Override
+        public Future<Boolean> setUserOffline(String userId) {
+            online.remove(userId);
+            return Future.succeededFuture(true);
+        }
+
+        @Override
+        public void refreshPresence(Collection<String> userIds) {
+        }
+
+        @Override
+        public void registerOwner(String sessionId, String instanceId, int ttlSeconds) {
+            owners.put(sessionId, instanceId);
+        }
+
+        @Override
+        public void refreshOwners(Collection<String> sessionIds, int ttlSeconds) {
+        }
+
+        @Override
+        public Future<String> getOwner(String sessionId) {
+            return Future.succeededFuture(owners.get(sessionId));
+        }
+
+        @Override
+        public void deleteOwner(String sessionId) {
+            owners.remove(sessionId);
+        }
+    }
+
+    private static final class MemoryProfiles extends UserProfileService {
+        final Map<String, String> status = new ConcurrentHashMap<>();
+
+        @Override
+        public void updateStatus(String userId, String value) {
+            status.put(userId, value);
+        }
+    }
+
+    private static final class MemoryRooms extends RoomPersistenceService {
+        final Map<String, Set<String>> members = new ConcurrentHashMap<>();
+
+        @Override
+        public void addMember(String roomId, String userId) {
+            members.computeIfAbsent(roomId, r -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+
+        @Override
+        public void removeMember(String roomId, String userId) {
+            Set<String> set = members.get(roomId);
+            if (set != null) set.remove(userId);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.dim.ws;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    // 10 events/s, burst 3
+    private static final long INTERVAL = SECOND / 10;
+    private static final long T0 = 42 * SECOND;
+
+    private static TokenBuckets buckets() {
+        return new TokenBuckets(new long[] {INTERVAL, SECOND}, new long[] {INTERVAL * 2, 0});
+    }
+
+    @Test
+    void burstThenDeny() {
+        TokenBuckets buckets = buckets();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire(0, T0), "event " + i);
+        }
+        assertEquals(INTERVAL, buckets.tryAcquire(0, T0));
+        // a refused event takes nothing
+        assertEquals(INTERVAL / 2, buckets.tryAcquire(0, T0 + INTERVAL / 2));
+    }
+
+    @Test
+    void refillsAtTheRate() {
+        TokenBuckets buckets = buckets();
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire(0, T0);
+        }
+        assertEquals(0, buckets.tryAcquire(0, T0 + INTERVAL));
+        assertTrue(buckets.tryAcquire(0, T0 + INTERVAL) > 0);
+        // idle time does not build up more than the burst
+        long later = T0 + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire(0, later), "event " + i);
+        }
+        assertEquals(INTERVAL, buckets.tryAcquire(0, later));
+    }
+
+    @Test
+    void typesAreIndependent() {
+        TokenBuckets buckets = buckets();
+        assertEquals(0, buckets.tryAcquire(1, T0));
+        assertEquals(SECOND, buckets.tryAcquire(1, T0));
+        assertEquals(0, buckets.tryAcquire(0, T0));
+        assertEquals(0, buckets.tryAcquire(1, T0 + SECOND));
+    }
+
+    @Test
+    void notifiesOncePerInterval() {
+        TokenBuckets buckets = buckets();
+        assertTrue(buckets.shouldNotify(0, T0, SECOND));
+        assertFalse(buckets.shouldNotify(0, T0 + SECOND - 1, SECOND));
+        assertTrue(buckets.shouldNotify(1, T0, SECOND));
+        assertTrue(buckets.shouldNotify(0, T0 + SECOND, SECOND));
+    }
+}